@@ -0,0 +1,195 @@
+package com.panda.a6o6test.analysis;
+
+import android.graphics.ImageFormat;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.Surface;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Optional YUV stream next to the preview, feeding {@link FrameAnalyzer}s on a dedicated "Analysis" thread.
+ * Images are acquired on the camera thread and handed over through a {@link LatestFrameSlot},
+ * so analyzers always see the newest frame and a slow analyzer drops frames instead of stalling the camera.
+ */
+public final class FrameAnalysisPipeline {
+
+    private static final String TAG = "FrameAnalysis";
+    // one image being analyzed, one waiting in the slot, one for the camera to write into
+    private static final int MAX_IMAGES = 3;
+
+    private static final class Entry {
+        final FrameAnalyzer analyzer;
+        final AnalyzerStats stats;
+
+        Entry(FrameAnalyzer analyzer) {
+            this.analyzer = analyzer;
+            this.stats = new AnalyzerStats(analyzer.getName());
+        }
+    }
+
+    private final CopyOnWriteArrayList<Entry> entries = new CopyOnWriteArrayList<>();
+    private final LatestFrameSlot<Image> slot = new LatestFrameSlot<>();
+    private final AtomicBoolean analysisScheduled = new AtomicBoolean();
+    private final YuvFrame frame = new YuvFrame();
+    private final Runnable analyzeTask = this::analyzePending;
+    private final Runnable startTask = this::startAnalyzers;
+
+    private ImageReader reader;
+    private HandlerThread analysisThread;
+    private volatile Handler analysisHandler;
+    private volatile long analyzedFrames;
+
+    /**
+     * Analyzers may be added or removed at any time
+     */
+    public void addAnalyzer(FrameAnalyzer analyzer) {
+        for (Entry entry : entries) {
+            if(entry.analyzer == analyzer){
+                return;
+            }
+        }
+        entries.add(new Entry(analyzer));
+    }
+
+    public void removeAnalyzer(FrameAnalyzer analyzer) {
+        for (Entry entry : entries) {
+            if(entry.analyzer == analyzer){
+                entries.remove(entry);
+            }
+        }
+    }
+
+    /**
+     * Creates the reader and the analysis thread. Called on the camera thread.
+     * @param width stream width, one of the YUV_420_888 output sizes
+     * @param height stream height
+     * @param cameraHandler handler of the camera thread, where images are acquired
+     * @return surface to add to the capture session and request
+     */
+    public Surface start(int width, int height, Handler cameraHandler) {
+        stop();
+        analysisThread = new HandlerThread("Analysis");
+        analysisThread.start();
+        analysisHandler = new Handler(analysisThread.getLooper());
+        analysisHandler.post(startTask);
+        reader = ImageReader.newInstance(width, height, ImageFormat.YUV_420_888, MAX_IMAGES);
+        reader.setOnImageAvailableListener(this::onImageAvailable, cameraHandler);
+        return reader.getSurface();
+    }
+
+    /**
+     * Stops analysis and releases all images. Called on the camera thread after the device was closed.
+     */
+    public void stop() {
+        if(analysisThread != null){
+            analysisHandler = null;
+            analysisThread.quitSafely();
+            try {
+                analysisThread.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            analysisThread = null;
+        }
+        slot.clear();
+        analysisScheduled.set(false);
+        if(reader != null){
+            reader.close();
+            reader = null;
+        }
+    }
+
+    /**
+     * @return surface of the running stream, or null when stopped
+     */
+    public Surface getSurface() {
+        return reader != null ? reader.getSurface() : null;
+    }
+
+    // camera thread
+    private void onImageAvailable(ImageReader imageReader) {
+        Handler handler = analysisHandler;
+        Image image;
+        try {
+            image = imageReader.acquireLatestImage();
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "No free image", e);
+            return;
+        }
+        if(image == null){
+            return;
+        }
+        if(handler == null){
+            image.close();
+            return;
+        }
+        slot.offer(image);
+        if(analysisScheduled.compareAndSet(false, true)){
+            handler.post(analyzeTask);
+        }
+    }
+
+    // analysis thread, the previous stream's thread was joined in stop()
+    private void startAnalyzers() {
+        for (Entry entry : entries) {
+            entry.analyzer.onStart();
+        }
+    }
+
+    // analysis thread
+    private void analyzePending() {
+        analysisScheduled.set(false);
+        Image image = slot.take();
+        if(image == null){
+            return;
+        }
+        try {
+            Image.Plane[] planes = image.getPlanes();
+            frame.set(image.getWidth(), image.getHeight(), image.getTimestamp());
+            frame.setPlane(YuvFrame.Y, planes[0].getBuffer(), planes[0].getRowStride(), planes[0].getPixelStride());
+            frame.setPlane(YuvFrame.U, planes[1].getBuffer(), planes[1].getRowStride(), planes[1].getPixelStride());
+            frame.setPlane(YuvFrame.V, planes[2].getBuffer(), planes[2].getRowStride(), planes[2].getPixelStride());
+            for (Entry entry : entries) {
+                long start = System.nanoTime();
+                entry.analyzer.analyze(frame);
+                entry.stats.record(System.nanoTime() - start);
+            }
+            analyzedFrames++;
+        } finally {
+            frame.release();
+            image.close();
+        }
+    }
+
+    /**
+     * @return frames passed to the analyzers
+     */
+    public long getAnalyzedFrames() {
+        return analyzedFrames;
+    }
+
+    /**
+     * @return frames replaced by a newer one before analysis got to them
+     */
+    public long getDroppedFrames() {
+        return slot.getDropped();
+    }
+
+    /**
+     * @return timing of each registered analyzer
+     */
+    public List<AnalyzerStats> getStats() {
+        List<AnalyzerStats> stats = new ArrayList<>();
+        for (Entry entry : entries) {
+            stats.add(entry.stats);
+        }
+        return stats;
+    }
+}
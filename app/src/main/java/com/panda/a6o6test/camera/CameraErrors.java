@@ -0,0 +1,75 @@
+package com.panda.a6o6test.camera;
+
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraDevice;
+
+/**
+ * Classifies why the camera was lost, to decide whether reopening it can help.
+ */
+final class CameraErrors {
+
+    /**
+     * Pseudo error code for {@link CameraDevice.StateCallback#onDisconnected(CameraDevice)}, real codes start at 1
+     */
+    static final int DISCONNECTED = 0;
+
+    private CameraErrors(){}
+
+    /**
+     * @param errorCode one of the CameraDevice.StateCallback ERROR_ codes or {@link #DISCONNECTED}
+     * @return whether closing and reopening the camera may succeed
+     */
+    static boolean isRecoverable(int errorCode) {
+        switch (errorCode){
+            case DISCONNECTED:
+            // another app holds the camera, it may give it back
+            case CameraDevice.StateCallback.ERROR_CAMERA_IN_USE:
+            case CameraDevice.StateCallback.ERROR_MAX_CAMERAS_IN_USE:
+            // documented as fatal for this device instance, a new one may work
+            case CameraDevice.StateCallback.ERROR_CAMERA_DEVICE:
+            case CameraDevice.StateCallback.ERROR_CAMERA_SERVICE:
+                return true;
+            // disabled by device policy, retrying will not change that
+            case CameraDevice.StateCallback.ERROR_CAMERA_DISABLED:
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return error code equivalent to the reason openCamera failed
+     */
+    static int fromAccessException(CameraAccessException e) {
+        switch (e.getReason()){
+            case CameraAccessException.CAMERA_IN_USE:
+                return CameraDevice.StateCallback.ERROR_CAMERA_IN_USE;
+            case CameraAccessException.MAX_CAMERAS_IN_USE:
+                return CameraDevice.StateCallback.ERROR_MAX_CAMERAS_IN_USE;
+            case CameraAccessException.CAMERA_DISABLED:
+                return CameraDevice.StateCallback.ERROR_CAMERA_DISABLED;
+            case CameraAccessException.CAMERA_DISCONNECTED:
+                return DISCONNECTED;
+            default:
+                return CameraDevice.StateCallback.ERROR_CAMERA_DEVICE;
+        }
+    }
+
+    static String describe(int errorCode) {
+        switch (errorCode){
+            case DISCONNECTED:
+                return "disconnected";
+            case CameraDevice.StateCallback.ERROR_CAMERA_IN_USE:
+                return "camera in use";
+            case CameraDevice.StateCallback.ERROR_MAX_CAMERAS_IN_USE:
+                return "max cameras in use";
+            case CameraDevice.StateCallback.ERROR_CAMERA_DISABLED:
+                return "camera disabled";
+            case CameraDevice.StateCallback.ERROR_CAMERA_DEVICE:
+                return "camera device error";
+            case CameraDevice.StateCallback.ERROR_CAMERA_SERVICE:
+                return "camera service error";
+            default:
+                return "error " + errorCode;
+        }
+    }
+}
@@ -1,39 +1,146 @@
 package com.panda.a6o6test.camera;
 
 import android.content.Context;
+import android.graphics.Rect;
 import android.hardware.camera2.CameraAccessException;
 import android.hardware.camera2.CameraCaptureSession;
-import android.hardware.camera2.CameraCharacteristics;
 import android.hardware.camera2.CameraDevice;
 import android.hardware.camera2.CameraManager;
 import android.hardware.camera2.CameraMetadata;
+import android.hardware.camera2.CaptureFailure;
 import android.hardware.camera2.CaptureRequest;
 import android.hardware.camera2.CaptureResult;
 import android.hardware.camera2.TotalCaptureResult;
 import android.hardware.camera2.params.Face;
+import android.os.Environment;
 import android.os.Handler;
+import android.util.Log;
+import android.util.Range;
+import android.util.Size;
 import android.view.Surface;
+import android.view.SurfaceHolder;
+import android.view.View;
 
 import androidx.annotation.NonNull;
 
+import com.panda.a6o6test.analysis.AnalysisConstants;
+import com.panda.a6o6test.analysis.FrameAnalysisPipeline;
+import com.panda.a6o6test.analysis.FrameDumpAnalyzer;
+import com.panda.a6o6test.analysis.FrameQualityAnalyzer;
+import com.panda.a6o6test.logic.MainLogicState;
+import com.panda.a6o6test.logic.MainStateListener;
 import com.panda.a6o6test.logic.MainUiStateMachine;
 import com.panda.a6o6test.permissions.PermissionUtility;
+import com.panda.a6o6test.telemetry.LatencyTracer;
+import com.panda.a6o6test.telemetry.MetricsRegistry;
+import com.panda.a6o6test.telemetry.TelemetryLog;
+import com.panda.a6o6test.telemetry.TelemetrySession;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Vector;
 
 /**
  * Takes care of Camera logic.
  * Keeps reference to CameraDevice to stop when Pause is propagated from Fragment.
+ * The camera starts opening right away on the camera thread, in parallel with surface creation,
+ * and the capture session is created as soon as both are ready.
+ * The preview buffer is sized to the smallest supported output covering the view, so the ISP and the compositor
+ * do not process more pixels than are shown.
+ * With {@link CameraConstants#FRAME_ANALYSIS_ENABLED} a small YUV stream feeds the {@link FrameAnalysisPipeline},
+ * where a {@link FrameQualityAnalyzer} keeps the state machine from going ALL_GO on dark, backlit or blurry frames.
+ * Faces come from the camera's statistics, or from a {@link SoftwareFaceAnalyzer} on that stream
+ * if the camera has no face detection.
+ * A camera lost to another app or a HAL error is closed and reopened with {@link RecoveryBackoff},
+ * the UI shows ERROR meanwhile and returns to IDLE once a session is running again.
+ * During TEST the camera also feeds a {@link TestRecorder}, whose encoder surface is always part of the session.
  * Logic partially taken from online example.
- * Preview fitting to screen size was not implemented, to cut on development time.
- * TODO change SurfaceView to TextureView for easier scaling/fitting
  */
 public class CameraLogic {
 
+    private static final String TAG = "CameraLogic";
+
     private static CameraLogic instance;
-    private CameraDevice mCameraDevice;
+    private volatile CameraDevice mCameraDevice;
+    private volatile boolean cameraWanted;
+    // resolved once per process, on the camera thread
+    private volatile CameraSelection cameraSelection;
+    private final PreviewStartupTimer startupTimer = new PreviewStartupTimer();
+    private final RecoveryBackoff recoveryBackoff = new RecoveryBackoff();
+    private final RecoveryStats recoveryStats = new RecoveryStats();
+    private volatile Runnable pendingReopen;
+    private final FrameAnalysisPipeline analysisPipeline = new FrameAnalysisPipeline();
+    private final FrameQualityAnalyzer qualityAnalyzer = new FrameQualityAnalyzer(MainUiStateMachine.getInstance()::onFrameQuality);
+    private volatile Handler cameraHandler;
+    private File recordingDirectory;
+    // once per process, so the cap on dumped frames holds across sessions
+    private volatile FrameDumpAnalyzer frameDumpAnalyzer;
+    private SurfaceHolder surfaceHolder;
+    private SurfaceHolder.Callback surfaceCallback;
+
+    // confined to the camera thread
+    private int surfaceWidth, surfaceHeight;
+    private boolean bufferSizeChosen;
+    private Size bufferSize;
+    private Range<Integer> fpsRange;
+    private Surface analysisSurface;
+    private SoftwareFaceAnalyzer softwareFaceAnalyzer;
+    private TestRecorder testRecorder;
+    private boolean recordingRejected;
+    private boolean analysisRejected;
+    private final RecordingGate recordingGate = new RecordingGate();
+    // bumped per started recording, so the limit of an earlier one does nothing
+    private int recordingSequence;
+    private CameraCaptureSession captureSession;
+    private CameraCaptureSession.CaptureCallback repeatingCallback;
+    private Surface previewSurface;
+    private boolean sessionCreated;
+    // when the camera was lost, 0 while not recovering
+    private long recoveryStartNanos;
+    private final FacePresenceTracker faceTracker = new FacePresenceTracker();
+    private final int[] smoothedBounds = new int[4];
+    private final Rect smoothedFace = new Rect();
+
+    // TEST starts and ends recording, on the camera thread where the repeating request lives
+    private final MainStateListener recordingSwitch = new MainStateListener() {
+        @Override
+        public void onStateChanged(MainLogicState state) {
+            Handler handler = cameraHandler;
+            if(handler != null){
+                boolean test = state == MainLogicState.TEST;
+                handler.post(() -> setRecording(test, handler));
+            }
+        }
 
-    private CameraLogic(){}
+        @Override
+        public boolean isLossless() {
+            return true;
+        }
+    };
+
+    private final MetricsRegistry.Counter captureResults = MetricsRegistry.getInstance().counter("camera.captureResults");
+    private final MetricsRegistry.Counter failedCaptures = MetricsRegistry.getInstance().counter("camera.failedCaptures");
+    // across resumes, the gauges below only show the latest start
+    private final MetricsRegistry.Histogram timeToPreview = MetricsRegistry.getInstance()
+            .histogram("camera.startup.timeToPreviewMillis", 100, 200, 300, 500, 750, 1000, 1500, 2000, 3000);
+
+    private CameraLogic(){
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("analysis.analyzedFrames", analysisPipeline::getAnalyzedFrames);
+        metrics.gauge("analysis.droppedFrames", analysisPipeline::getDroppedFrames);
+        metrics.gauge("camera.recovery.failures", recoveryStats::getFailures);
+        metrics.gauge("camera.recovery.recoveries", recoveryStats::getRecoveries);
+        metrics.gauge("camera.recovery.givenUp", recoveryStats::getGivenUp);
+        metrics.gauge("camera.recovery.attempts", recoveryStats::getAttempts);
+        metrics.gauge("camera.recovery.lastLatencyMillis", recoveryStats::getLastLatencyMillis);
+        metrics.gauge("camera.recovery.maxLatencyMillis", recoveryStats::getMaxLatencyMillis);
+        metrics.gauge("camera.recovery.averageLatencyMillis", recoveryStats::getAverageLatencyMillis);
+        metrics.gauge("camera.recording.failures", recordingGate::getFailures);
+        metrics.gauge("camera.startup.openMillis", startupTimer::getOpenMillis);
+        metrics.gauge("camera.startup.configureMillis", startupTimer::getConfigureMillis);
+        metrics.gauge("camera.startup.firstFrameMillis", startupTimer::getFirstFrameMillis);
+        metrics.gauge("camera.startup.totalMillis", startupTimer::getTimeToPreviewMillis);
+    }
 
     /**
      * @return Singleton instance
@@ -46,7 +153,8 @@ public class CameraLogic {
     }
 
     /**
-     * Attempts to start camera
+     * Attempts to start camera. Called on the main thread, the camera itself is opened on the handler's thread.
+     * Does nothing without a handler, i.e. while paused.
      * @param context
      * @param surfaceView
      * @param handler
@@ -56,11 +164,43 @@ public class CameraLogic {
             MainUiStateMachine.getInstance().toError();
             return;
         }
+        if(handler == null){
+            // no camera thread while paused, e.g. a permission granted before onResume, which starts the camera then
+            return;
+        }
         boolean hasPermission = PermissionUtility.checkCameraPermission(context);
         if(!hasPermission){
             MainUiStateMachine.getInstance().toNoPermission();
-        }else{
-            startCameraPreview(context, surfaceView, handler);
+        }else if(!cameraWanted){
+            cameraWanted = true;
+            cameraHandler = handler;
+            File movies = context.getExternalFilesDir(Environment.DIRECTORY_MOVIES);
+            recordingDirectory = movies != null ? movies : context.getFilesDir();
+            if(AnalysisConstants.FRAME_DUMP_ENABLED && frameDumpAnalyzer == null){
+                File files = context.getExternalFilesDir(null);
+                frameDumpAnalyzer = new FrameDumpAnalyzer(new File(files != null ? files : context.getFilesDir(),
+                        AnalysisConstants.FRAME_DUMP_DIRECTORY), AnalysisConstants.FRAME_DUMP_INTERVAL_MILLIS,
+                        AnalysisConstants.FRAME_DUMP_MAX_FILES);
+            }
+            startupTimer.markResume();
+            MainUiStateMachine.getInstance().addStateListener(recordingSwitch);
+            CameraManager manager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+
+            surfaceHolder = surfaceView.getHolder();
+            surfaceCallback = getSurfaceCallback(surfaceView, handler);
+            surfaceHolder.addCallback(surfaceCallback);
+            final Rect surfaceFrame = surfaceHolder.getSurface().isValid() ? surfaceHolder.getSurfaceFrame() : new Rect();
+
+            handler.post(() -> {
+                faceTracker.reset();
+                sessionCreated = false;
+                bufferSizeChosen = false;
+                recoveryBackoff.reset();
+                recoveryStartNanos = 0;
+                surfaceWidth = surfaceFrame.width();
+                surfaceHeight = surfaceFrame.height();
+                startCameraPreview(manager, surfaceView, handler);
+            });
         }
     }
 
@@ -68,108 +208,527 @@ public class CameraLogic {
      * Stops camera. To be called from onPause.
      */
     public void stopCamera() {
+        cameraWanted = false;
+        MainUiStateMachine.getInstance().removeListener(recordingSwitch);
+        if(surfaceHolder != null){
+            surfaceHolder.removeCallback(surfaceCallback);
+            surfaceHolder = null;
+            surfaceCallback = null;
+        }
         if(mCameraDevice != null){
             mCameraDevice.close();
             mCameraDevice = null;
         }
+        Runnable reopen = pendingReopen;
+        if(cameraHandler != null && reopen != null){
+            cameraHandler.removeCallbacks(reopen);
+        }
+        if(cameraHandler != null){
+            // outputs are released on the camera thread, where they are used
+            cameraHandler.post(this::releaseOutputs);
+            cameraHandler = null;
+        }
+    }
+
+    /**
+     * @return counts and latencies of reopening a lost camera
+     */
+    public RecoveryStats getRecoveryStats() {
+        return recoveryStats;
+    }
+
+    /**
+     * @return pipeline to register frame analyzers with, fed only if {@link CameraConstants#FRAME_ANALYSIS_ENABLED}
+     */
+    public FrameAnalysisPipeline getAnalysisPipeline() {
+        return analysisPipeline;
+    }
+
+    // camera thread
+    private void startAnalysis(CameraSelection selection, CameraSurfaceView surfaceView, Handler handler){
+        analysisSurface = null;
+        boolean softwareFaces = selection.faceDetectMode == CameraMetadata.STATISTICS_FACE_DETECT_MODE_OFF;
+        // the quality check alone is not worth a stream combination LEGACY cameras do not guarantee
+        boolean quality = CameraConstants.FRAME_ANALYSIS_ENABLED && !selection.legacy;
+        if(analysisRejected || (!quality && !softwareFaces)){
+            return;
+        }
+        Size size = selection.chooseAnalysisSize(CameraConstants.ANALYSIS_MIN_WIDTH, CameraConstants.ANALYSIS_MIN_HEIGHT);
+        if(size == null){
+            return;
+        }
+        if(CameraConstants.FRAME_ANALYSIS_ENABLED){
+            // reset by the pipeline on the analysis thread, rides along on a software face stream
+            analysisPipeline.addAnalyzer(qualityAnalyzer);
+            if(frameDumpAnalyzer != null){
+                analysisPipeline.addAnalyzer(frameDumpAnalyzer);
+            }
+        }
+        analysisSurface = analysisPipeline.start(size.getWidth(), size.getHeight(), handler);
+        if(softwareFaces){
+            softwareFaceAnalyzer = new SoftwareFaceAnalyzer(selection, getSoftwareFaceReceiver(surfaceView, handler),
+                    CameraConstants.SOFTWARE_FACE_DETECTION_HZ);
+            analysisPipeline.addAnalyzer(softwareFaceAnalyzer);
+        }
+    }
+
+    // camera thread, after the device was closed
+    private void releaseOutputs(){
+        stopAnalysis();
+        if(testRecorder != null){
+            testRecorder.release();
+            testRecorder = null;
+        }
+        recordingGate.reset();
+        captureSession = null;
+    }
+
+    // camera thread, the encoder surface has to exist before the session is created
+    private void prepareRecorder(CameraSelection selection){
+        if(!CameraConstants.RECORDING_ENABLED || recordingRejected || testRecorder != null){
+            return;
+        }
+        Size size = selection.chooseRecordingSize(CameraConstants.RECORDING_MIN_WIDTH, CameraConstants.RECORDING_MIN_HEIGHT);
+        if(size == null){
+            return;
+        }
+        try {
+            testRecorder = new TestRecorder(recordingDirectory, size.getWidth(), size.getHeight(), selection.sensorOrientation);
+        } catch (IOException e) {
+            Log.w(TAG, "Recording not available", e);
+        }
+    }
+
+    // camera thread
+    private void setRecording(boolean test, Handler handler){
+        boolean untargeted = recordingGate.setWanted(test);
+        if(testRecorder == null){
+            return;
+        }
+        if(test && !testRecorder.isRecording()){
+            testRecorder.start(handler, () -> onRecordingStarted(handler), () -> onRecordingFailed(handler));
+        }else if(!test){
+            if(untargeted){
+                // no more frames for the encoder before it is told to finish
+                updateRepeatingRequest(handler);
+            }
+            // also drops a start still waiting for the previous recording to finish
+            testRecorder.stop();
+        }
+    }
+
+    // camera thread, the encoder is running and may now be targeted
+    private void onRecordingStarted(Handler handler){
+        if(testRecorder == null){
+            return;
+        }
+        if(!recordingGate.onStarted()){
+            testRecorder.stop();
+            return;
+        }
+        updateRepeatingRequest(handler);
+        int sequence = ++recordingSequence;
+        handler.postDelayed(() -> onRecordingLimit(sequence, handler), CameraConstants.RECORDING_MAX_DURATION_MILLIS);
+    }
+
+    // camera thread, cuts a recording TEST did not end in time
+    private void onRecordingLimit(int sequence, Handler handler){
+        if(sequence != recordingSequence || testRecorder == null || !recordingGate.onLimitReached()){
+            return;
+        }
+        updateRepeatingRequest(handler);
+        testRecorder.stop();
+    }
+
+    // camera thread, the encoder stopped on its own and must not be fed anymore
+    private void onRecordingFailed(Handler handler){
+        if(recordingGate.onFailed()){
+            updateRepeatingRequest(handler);
+        }
+    }
+
+    // camera thread
+    private void stopAnalysis(){
+        analysisPipeline.stop();
+        analysisSurface = null;
+        if(softwareFaceAnalyzer != null){
+            analysisPipeline.removeAnalyzer(softwareFaceAnalyzer);
+            softwareFaceAnalyzer.shutdown();
+            softwareFaceAnalyzer = null;
+        }
     }
 
-    // Picks the selfie camera from the list by LENS_FACING_FRONT characteristic
-    private String getSelfieCameraId(CameraManager manager) throws CameraAccessException {
-        String[] cams = manager.getCameraIdList();
-        for (String cam : cams) {
-            CameraCharacteristics cameraCharacteristics = manager.getCameraCharacteristics(cam);
-            int cameraFacing = cameraCharacteristics.get(CameraCharacteristics.LENS_FACING);
-            if (cameraFacing == CameraCharacteristics.LENS_FACING_FRONT) {
-                return cam;
+    // software results arrive on the detection worker and are tracked on the camera thread like the camera's own
+    private FaceRectReceiver getSoftwareFaceReceiver(CameraSurfaceView surfaceView, Handler handler){
+        return new FaceRectReceiver() {
+            @Override
+            public void setFaceRect(Rect rect, long timestampNanos) {
+                handler.post(() -> {
+                    if(rect != null){
+                        onFaceResult(surfaceView, timestampNanos, true, rect.left, rect.top, rect.right, rect.bottom);
+                    }else{
+                        onFaceResult(surfaceView, timestampNanos, false, 0, 0, 0, 0);
+                    }
+                });
             }
+
+            @Override
+            public void setSensorGeometry(Rect activeArraySize, int sensorOrientation, boolean mirrored) {
+            }
+        };
+    }
+
+    // lets the receiver build its sensor-to-view transform for face rects
+    private void applySensorGeometry(CameraSelection selection, FaceRectReceiver receiver){
+        if(selection.activeArraySize != null){
+            receiver.setSensorGeometry(selection.activeArraySize, selection.sensorOrientation, selection.mirrored);
         }
-        return null;
     }
 
-    private void startCameraPreview(Context context, CameraSurfaceView surfaceView, Handler handler){
-        CameraManager manager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+    // runs on the camera thread
+    private void startCameraPreview(CameraManager manager, CameraSurfaceView surfaceView, Handler handler){
         try {
-            String selfieCameraId = getSelfieCameraId(manager);
-            manager.openCamera(selfieCameraId, getCameraDeviceStateCallback(surfaceView, handler), null);
+            CameraSelection selection = cameraSelection;
+            if(selection == null){
+                selection = CameraSelection.resolveSelfie(manager);
+                cameraSelection = selection;
+            }
+            if(selection == null){
+                MainUiStateMachine.getInstance().toError();
+                return;
+            }
+            applySensorGeometry(selection, surfaceView);
+            fpsRange = selection.chooseFpsRange(CameraConstants.TARGET_PREVIEW_FPS);
+            requestBufferSize(selection, surfaceView, handler);
+            startAnalysis(selection, surfaceView, handler);
+            prepareRecorder(selection);
+            // resumed in TEST, no transition is coming to start the recording
+            setRecording(MainUiStateMachine.getInstance().getState() == MainLogicState.TEST, handler);
         } catch (CameraAccessException | SecurityException e) {
             MainUiStateMachine.getInstance().toNoPermission();
             e.printStackTrace();
+            return;
+        }
+        openCamera(manager, surfaceView, handler);
+    }
+
+    // camera thread, failing to open goes through the same recovery as losing an open camera
+    private void openCamera(CameraManager manager, CameraSurfaceView surfaceView, Handler handler){
+        try {
+            manager.openCamera(cameraSelection.cameraId, getCameraDeviceStateCallback(manager, surfaceView, handler), handler);
+        } catch (CameraAccessException e) {
+            e.printStackTrace();
+            onCameraLost(null, CameraErrors.fromAccessException(e), manager, surfaceView, handler);
+        } catch (SecurityException e) {
+            e.printStackTrace();
+            MainUiStateMachine.getInstance().toNoPermission();
+        }
+    }
+
+    // camera thread, closes what is left of the camera and schedules the next attempt to reopen it
+    private void onCameraLost(CameraDevice cameraDevice, int errorCode, CameraManager manager, CameraSurfaceView surfaceView, Handler handler){
+        if(cameraDevice != null){
+            cameraDevice.close();
+            if(mCameraDevice != cameraDevice && mCameraDevice != null){
+                // a stale device, the current one is fine
+                return;
+            }
+            mCameraDevice = null;
+        }
+        sessionCreated = false;
+        captureSession = null;
+        if(!cameraWanted){
+            return;
+        }
+        if(recoveryStartNanos == 0){
+            recoveryStartNanos = System.nanoTime();
+            recoveryStats.recordFailure();
+            MainUiStateMachine.getInstance().toError();
+        }
+        long delay = CameraErrors.isRecoverable(errorCode) ? recoveryBackoff.nextDelayMillis() : -1;
+        if(delay < 0){
+            Log.w(TAG, "Camera lost: " + CameraErrors.describe(errorCode) + ", giving up after "
+                    + recoveryBackoff.getAttempts() + " attempts");
+            recoveryStats.recordGiveUp();
+            recoveryStartNanos = 0;
+            recoveryBackoff.reset();
+            return;
+        }
+        Log.w(TAG, "Camera lost: " + CameraErrors.describe(errorCode) + ", reopening in " + delay + "ms");
+        Runnable reopen = () -> {
+            pendingReopen = null;
+            if(cameraWanted){
+                recoveryStats.recordAttempt();
+                openCamera(manager, surfaceView, handler);
+            }
+        };
+        pendingReopen = reopen;
+        handler.postDelayed(reopen, delay);
+    }
+
+    // camera thread, a running session after losing the camera ends the recovery
+    private void onRecovered(){
+        if(recoveryStartNanos == 0){
+            return;
+        }
+        long latencyMillis = (System.nanoTime() - recoveryStartNanos) / 1_000_000L;
+        recoveryStats.recordRecovery(latencyMillis);
+        Log.i(TAG, "Camera recovered after " + recoveryBackoff.getAttempts() + " attempts in " + latencyMillis + "ms");
+        recoveryStartNanos = 0;
+        recoveryBackoff.reset();
+    }
+
+    // the buffer size depends on the laid out view, so it is chosen on the main thread and handed back to the camera thread
+    private void requestBufferSize(CameraSelection selection, CameraSurfaceView surfaceView, Handler handler){
+        surfaceView.post(() -> {
+            if(surfaceView.isLaidOut()){
+                applyBufferSize(selection, surfaceView, handler);
+                return;
+            }
+            surfaceView.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
+                @Override
+                public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                    v.removeOnLayoutChangeListener(this);
+                    applyBufferSize(selection, surfaceView, handler);
+                }
+            });
+        });
+    }
+
+    // main thread, the camera only accepts surfaces of a listed output size, hence setFixedSize
+    private void applyBufferSize(CameraSelection selection, CameraSurfaceView surfaceView, Handler handler){
+        if(!cameraWanted){
+            return;
+        }
+        Size size = selection.choosePreviewSize(surfaceView.getWidth(), surfaceView.getHeight());
+        if(size != null){
+            surfaceView.getHolder().setFixedSize(size.getWidth(), size.getHeight());
+        }
+        handler.post(() -> {
+            bufferSizeChosen = true;
+            bufferSize = size;
+            createSessionIfReady(surfaceView, handler);
+        });
+    }
+
+    // surface size is handed over to the camera thread, where it meets the opened device
+    private SurfaceHolder.Callback getSurfaceCallback(CameraSurfaceView surfaceView, Handler handler){
+        return new SurfaceHolder.Callback() {
+            @Override
+            public void surfaceCreated(@NonNull SurfaceHolder holder) {
+            }
+
+            @Override
+            public void surfaceChanged(@NonNull SurfaceHolder holder, int format, int width, int height) {
+                handler.post(() -> {
+                    surfaceWidth = width;
+                    surfaceHeight = height;
+                    createSessionIfReady(surfaceView, handler);
+                });
+            }
+
+            @Override
+            public void surfaceDestroyed(@NonNull SurfaceHolder holder) {
+                handler.post(() -> {
+                    surfaceWidth = 0;
+                    surfaceHeight = 0;
+                });
+            }
+        };
+    }
+
+    // camera thread, a surface of the wrong size would make the session scale or fail, so wait for the resize
+    private boolean isSurfaceReady(){
+        if(!bufferSizeChosen || surfaceWidth == 0){
+            return false;
+        }
+        return bufferSize == null || (bufferSize.getWidth() == surfaceWidth && bufferSize.getHeight() == surfaceHeight);
+    }
+
+    // runs on the camera thread once both the device and the surface are there
+    private void createSessionIfReady(CameraSurfaceView surfaceView, Handler handler){
+        CameraDevice cameraDevice = mCameraDevice;
+        if(cameraDevice == null || !isSurfaceReady() || sessionCreated){
+            return;
+        }
+        final CameraCaptureSession.StateCallback stateCallback = getCaptureSessionCallback(surfaceView, handler);
+
+        previewSurface = surfaceView.getHolder().getSurface();
+        Vector<Surface> surfaces = new Vector<>();
+        surfaces.add(previewSurface);
+        if(analysisSurface != null){
+            surfaces.add(analysisSurface);
+        }
+        if(testRecorder != null){
+            surfaces.add(testRecorder.getSurface());
+        }
+        try {
+            cameraDevice.createCaptureSession(surfaces, stateCallback, handler);
+            sessionCreated = true;
+            MainUiStateMachine.getInstance().toIdle();
+        } catch (CameraAccessException e) {
+            e.printStackTrace();
+            MainUiStateMachine.getInstance().toNoPermission();
+        } catch (Exception e){
+            MainUiStateMachine.getInstance().toError();
         }
     }
 
-    private CameraDevice.StateCallback getCameraDeviceStateCallback(CameraSurfaceView surfaceView, Handler handler){
+    private CameraDevice.StateCallback getCameraDeviceStateCallback(CameraManager manager, CameraSurfaceView surfaceView, Handler handler){
         return new CameraDevice.StateCallback() {
             @Override
             public void onOpened(@NonNull CameraDevice cameraDevice) {
-                mCameraDevice = cameraDevice;
-                final CameraCaptureSession.StateCallback stateCallback = getCaptureSessionCallback(cameraDevice, surfaceView);
-
-                Vector<Surface> surfaces = new Vector<>();
-                surfaces.add(surfaceView.getHolder().getSurface());
-                try {
-                    cameraDevice.createCaptureSession(surfaces, stateCallback, handler);
-                    MainUiStateMachine.getInstance().toIdle();
-                } catch (CameraAccessException e) {
-                    e.printStackTrace();
-                    MainUiStateMachine.getInstance().toNoPermission();
-                } catch (Exception e){
-                    MainUiStateMachine.getInstance().toError();
+                if(!cameraWanted){
+                    // paused while the camera was opening
+                    cameraDevice.close();
+                    return;
                 }
+                mCameraDevice = cameraDevice;
+                startupTimer.markOpened();
+                createSessionIfReady(surfaceView, handler);
             }
 
             @Override
             public void onDisconnected(@NonNull CameraDevice cameraDevice) {
-                MainUiStateMachine.getInstance().toError();
+                onCameraLost(cameraDevice, CameraErrors.DISCONNECTED, manager, surfaceView, handler);
             }
 
             @Override
             public void onError(@NonNull CameraDevice cameraDevice, int i) {
-                MainUiStateMachine.getInstance().toError();
+                onCameraLost(cameraDevice, i, manager, surfaceView, handler);
             }
         };
     }
 
-    private CameraCaptureSession.StateCallback getCaptureSessionCallback(CameraDevice cameraDevice, CameraSurfaceView surfaceView){
+    private CameraCaptureSession.StateCallback getCaptureSessionCallback(CameraSurfaceView surfaceView, Handler handler){
         return new CameraCaptureSession.StateCallback() {
             @Override
             public void onConfigured(@NonNull CameraCaptureSession cameraCaptureSession) {
-                try {
-                    CaptureRequest.Builder builder = cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
-                    builder.set(CaptureRequest.STATISTICS_FACE_DETECT_MODE,
-                            CameraMetadata.STATISTICS_FACE_DETECT_MODE_FULL);
-                    builder.addTarget(surfaceView.getHolder().getSurface());
-                    cameraCaptureSession.setRepeatingRequest(builder.build(), getCaptureCallback(surfaceView), null);
-                } catch (CameraAccessException e) {
-                    e.printStackTrace();
-                    MainUiStateMachine.getInstance().toError();
-                }
+                startupTimer.markConfigured();
+                onRecovered();
+                captureSession = cameraCaptureSession;
+                repeatingCallback = getCaptureCallback(surfaceView,
+                        cameraSelection.faceDetectMode != CameraMetadata.STATISTICS_FACE_DETECT_MODE_OFF,
+                        cameraSelection.realtimeTimestamps);
+                updateRepeatingRequest(handler);
             }
 
             @Override
             public void onConfigureFailed(@NonNull CameraCaptureSession cameraCaptureSession) {
+                if(testRecorder != null){
+                    // not every device streams three outputs at once, preview matters more than recording
+                    Log.w(TAG, "Session rejected with recording output, retrying without it");
+                    recordingRejected = true;
+                    testRecorder.release();
+                    testRecorder = null;
+                    sessionCreated = false;
+                    createSessionIfReady(surfaceView, handler);
+                    return;
+                }
+                if(analysisSurface != null){
+                    // next to go, this also ends software face detection, but a preview beats none
+                    Log.w(TAG, "Session rejected with analysis output, retrying without it");
+                    analysisRejected = true;
+                    stopAnalysis();
+                    // no verdicts anymore, a bad one must not keep holding ALL_GO back
+                    MainUiStateMachine.getInstance().onFrameQuality(true);
+                    sessionCreated = false;
+                    createSessionIfReady(surfaceView, handler);
+                    return;
+                }
                 MainUiStateMachine.getInstance().toError();
             }
         };
     }
 
-    private CameraCaptureSession.CaptureCallback getCaptureCallback(FaceRectReceiver faceRectReceiver){
+    // camera thread, rebuilt whenever the set of targets changes
+    private void updateRepeatingRequest(Handler handler){
+        CameraCaptureSession session = captureSession;
+        if(session == null || !cameraWanted){
+            // closed together with the device
+            return;
+        }
+        try {
+            CaptureRequest.Builder builder = session.getDevice().createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+            builder.set(CaptureRequest.STATISTICS_FACE_DETECT_MODE, cameraSelection.faceDetectMode);
+            if(fpsRange != null){
+                builder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, fpsRange);
+            }
+            builder.addTarget(previewSurface);
+            if(analysisSurface != null){
+                builder.addTarget(analysisSurface);
+            }
+            if(recordingGate.isTargeted() && testRecorder != null){
+                builder.addTarget(testRecorder.getSurface());
+            }
+            // results are processed on the camera thread, the HUD picks up the newest one when drawing
+            session.setRepeatingRequest(builder.build(), repeatingCallback, handler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            e.printStackTrace();
+            MainUiStateMachine.getInstance().toError();
+        }
+    }
+
+    // runs on the camera thread, state machine only hears about real presence changes and resyncs a face in frame itself
+    private void onFaceResult(FaceRectReceiver faceRectReceiver, long timestampNanos, boolean detected, int left, int top, int right, int bottom){
+        TelemetryLog log = TelemetrySession.getInstance().getLog();
+        if(log != null){
+            if(detected){
+                log.appendFace(timestampNanos, left, top, right, bottom);
+            }else{
+                log.appendNoFace(timestampNanos);
+            }
+        }
+        int edge = faceTracker.update(detected, left, top, right, bottom);
+        if(faceTracker.isPresent() && faceTracker.getSmoothedBounds(smoothedBounds)){
+            smoothedFace.set(smoothedBounds[0], smoothedBounds[1], smoothedBounds[2], smoothedBounds[3]);
+            faceRectReceiver.setFaceRect(smoothedFace, timestampNanos);
+        }else{
+            faceRectReceiver.setFaceRect(null, timestampNanos);
+        }
+        if(edge == FacePresenceTracker.EDGE_APPEARED){
+            MainUiStateMachine.getInstance().toAllGo();
+        }else if(edge == FacePresenceTracker.EDGE_DISAPPEARED){
+            MainUiStateMachine.getInstance().toNoFaceFromDetection();
+        }
+    }
+
+    // realtimeTimestamps tells whether SENSOR_TIMESTAMP already shares the time base of LatencyTracer.now()
+    private CameraCaptureSession.CaptureCallback getCaptureCallback(FaceRectReceiver faceRectReceiver, boolean hasFaceStatistics,
+                                                                    boolean realtimeTimestamps){
         return new CameraCaptureSession.CaptureCallback() {
 
             @Override
             public void onCaptureCompleted(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request, @NonNull TotalCaptureResult result) {
                 super.onCaptureCompleted(session, request, result);
-                lookForFaces(result);
+                captureResults.increment();
+                if(startupTimer.markFirstFrame()){
+                    timeToPreview.record(startupTimer.getTimeToPreviewMillis());
+                }
+                Long sensorTimestamp = result.get(CaptureResult.SENSOR_TIMESTAMP);
+                long captureNanos = sensorTimestamp != null
+                        ? LatencyTracer.fromCameraTimestamp(sensorTimestamp, realtimeTimestamps) : LatencyTracer.now();
+                LatencyTracer.getInstance().record(LatencyTracer.Stage.CAPTURE_TO_RESULT, captureNanos);
+                if(hasFaceStatistics){
+                    LatencyTracer.beginSection("CameraLogic.faces");
+                    lookForFaces(result, captureNanos);
+                    LatencyTracer.endSection();
+                }
+            }
+
+            @Override
+            public void onCaptureFailed(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request, @NonNull CaptureFailure failure) {
+                super.onCaptureFailed(session, request, failure);
+                failedCaptures.increment();
             }
 
-            void lookForFaces(CaptureResult result){
+            void lookForFaces(CaptureResult result, long captureNanos){
                 Face[] faces = result.get(CaptureResult.STATISTICS_FACES);
                 if(faces != null && faces.length>0){
-                    faceRectReceiver.setFaceRect(faces[0].getBounds());
-                    MainUiStateMachine.getInstance().toAllGo();
+                    Rect bounds = faces[0].getBounds();
+                    onFaceResult(faceRectReceiver, captureNanos, true, bounds.left, bounds.top, bounds.right, bounds.bottom);
                 }else{
-                    faceRectReceiver.setFaceRect(null);
-                    MainUiStateMachine.getInstance().toNoFaceFromDetection();
+                    onFaceResult(faceRectReceiver, captureNanos, false, 0, 0, 0, 0);
                 }
             }
         };
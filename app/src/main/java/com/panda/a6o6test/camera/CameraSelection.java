@@ -0,0 +1,173 @@
+package com.panda.a6o6test.camera;
+
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CameraMetadata;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.MediaCodec;
+import android.util.Range;
+import android.util.Size;
+import android.view.SurfaceHolder;
+
+import androidx.annotation.Nullable;
+
+/**
+ * The selfie camera together with the characteristics the app needs from it.
+ * Meant to be resolved once per process, since walking the camera list costs a binder call per camera.
+ */
+public final class CameraSelection {
+
+    public final String cameraId;
+    public final CameraCharacteristics characteristics;
+    public final Rect activeArraySize;
+    public final int sensorOrientation;
+    public final boolean mirrored;
+    /**
+     * STATISTICS_FACE_DETECT_MODE to request, OFF if the camera cannot detect faces
+     */
+    public final int faceDetectMode;
+    /**
+     * whether SENSOR_TIMESTAMP is in the elapsed realtime base, otherwise in the uptime base
+     */
+    public final boolean realtimeTimestamps;
+    /**
+     * whether the hardware level is LEGACY, which only guarantees one YUV stream next to the preview
+     */
+    public final boolean legacy;
+    private final OutputSizes previewSizes;
+    private final OutputSizes analysisSizes;
+    private final OutputSizes recordingSizes;
+    private final Range<Integer>[] fpsRanges;
+    private final int[] fpsLowers;
+    private final int[] fpsUppers;
+
+    private CameraSelection(String cameraId, CameraCharacteristics characteristics) {
+        this.cameraId = cameraId;
+        this.characteristics = characteristics;
+        this.activeArraySize = characteristics.get(CameraCharacteristics.SENSOR_INFO_ACTIVE_ARRAY_SIZE);
+        Integer orientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        this.sensorOrientation = orientation != null ? orientation : 0;
+        Integer lensFacing = characteristics.get(CameraCharacteristics.LENS_FACING);
+        this.mirrored = lensFacing != null && lensFacing == CameraCharacteristics.LENS_FACING_FRONT;
+
+        StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        previewSizes = new OutputSizes(map != null ? map.getOutputSizes(SurfaceHolder.class) : null);
+        analysisSizes = new OutputSizes(map != null ? map.getOutputSizes(ImageFormat.YUV_420_888) : null);
+        recordingSizes = new OutputSizes(map != null ? map.getOutputSizes(MediaCodec.class) : null);
+        fpsRanges = characteristics.get(CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES);
+        int count = fpsRanges != null ? fpsRanges.length : 0;
+        fpsLowers = new int[count];
+        fpsUppers = new int[count];
+        for (int i = 0; i < count; i++) {
+            fpsLowers[i] = fpsRanges[i].getLower();
+            fpsUppers[i] = fpsRanges[i].getUpper();
+        }
+        Integer timestampSource = characteristics.get(CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE);
+        realtimeTimestamps = timestampSource != null && timestampSource == CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE_REALTIME;
+        Integer level = characteristics.get(CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL);
+        legacy = level == null || level == CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_LEGACY;
+        faceDetectMode = chooseFaceDetectMode(characteristics.get(CameraCharacteristics.STATISTICS_INFO_AVAILABLE_FACE_DETECT_MODES));
+    }
+
+    // only face bounds are used, which SIMPLE already provides without FULL's landmarks and ids
+    private static int chooseFaceDetectMode(int[] available) {
+        int mode = CameraMetadata.STATISTICS_FACE_DETECT_MODE_OFF;
+        if(available == null){
+            return mode;
+        }
+        for (int candidate : available) {
+            if(candidate == CameraMetadata.STATISTICS_FACE_DETECT_MODE_SIMPLE){
+                return candidate;
+            }
+            if(candidate == CameraMetadata.STATISTICS_FACE_DETECT_MODE_FULL){
+                mode = candidate;
+            }
+        }
+        return mode;
+    }
+
+    /**
+     * @param viewWidth view width in pixels
+     * @param viewHeight view height in pixels
+     * @return preview buffer size in sensor orientation, or null if the camera lists no sizes for SurfaceHolder
+     * @see PreviewSizeSelector#chooseSize(int[], int[], int, int, int)
+     */
+    @Nullable
+    public Size choosePreviewSize(int viewWidth, int viewHeight) {
+        return previewSizes.choose(viewWidth, viewHeight, sensorOrientation);
+    }
+
+    /**
+     * @param minWidth minimum width in sensor orientation
+     * @param minHeight minimum height in sensor orientation
+     * @return smallest YUV_420_888 output size with that aspect ratio covering the minimum, or null if there is none
+     */
+    @Nullable
+    public Size chooseAnalysisSize(int minWidth, int minHeight) {
+        return analysisSizes.choose(minWidth, minHeight, 0);
+    }
+
+    /**
+     * @param minWidth minimum width in sensor orientation
+     * @param minHeight minimum height in sensor orientation
+     * @return smallest encoder output size with that aspect ratio covering the minimum, or null if there is none
+     */
+    @Nullable
+    public Size chooseRecordingSize(int minWidth, int minHeight) {
+        return recordingSizes.choose(minWidth, minHeight, 0);
+    }
+
+    /**
+     * @return AE target range for the given frame rate, or null to leave it to the template default
+     * @see PreviewSizeSelector#chooseFpsRange(int[], int[], int)
+     */
+    @Nullable
+    public Range<Integer> chooseFpsRange(int targetFps) {
+        int index = PreviewSizeSelector.chooseFpsRange(fpsLowers, fpsUppers, targetFps);
+        return index >= 0 ? fpsRanges[index] : null;
+    }
+
+    /**
+     * Picks the selfie camera from the list by LENS_FACING_FRONT characteristic
+     * @return selection, or null if the device has no front facing camera
+     */
+    @Nullable
+    static CameraSelection resolveSelfie(CameraManager manager) throws CameraAccessException {
+        String[] cams = manager.getCameraIdList();
+        for (String cam : cams) {
+            CameraCharacteristics cameraCharacteristics = manager.getCameraCharacteristics(cam);
+            Integer cameraFacing = cameraCharacteristics.get(CameraCharacteristics.LENS_FACING);
+            if (cameraFacing != null && cameraFacing == CameraCharacteristics.LENS_FACING_FRONT) {
+                return new CameraSelection(cam, cameraCharacteristics);
+            }
+        }
+        return null;
+    }
+
+    // the listed sizes of one output class, split into the arrays PreviewSizeSelector works on
+    private static final class OutputSizes {
+        private final Size[] sizes;
+        private final int[] widths;
+        private final int[] heights;
+
+        OutputSizes(@Nullable Size[] sizes) {
+            int count = sizes != null ? sizes.length : 0;
+            this.sizes = sizes;
+            widths = new int[count];
+            heights = new int[count];
+            for (int i = 0; i < count; i++) {
+                widths[i] = sizes[i].getWidth();
+                heights[i] = sizes[i].getHeight();
+            }
+        }
+
+        @Nullable
+        Size choose(int width, int height, int orientation) {
+            int index = PreviewSizeSelector.chooseSize(widths, heights, width, height, orientation);
+            return index >= 0 ? sizes[index] : null;
+        }
+    }
+}
@@ -13,15 +13,63 @@ import android.view.SurfaceView;
 import com.panda.a6o6test.R;
 import com.panda.a6o6test.sensors.RotationOrientationListener;
 import com.panda.a6o6test.sensors.SensorConstants;
+import com.panda.a6o6test.telemetry.LatencyTracer;
+import com.panda.a6o6test.telemetry.MetricsRegistry;
+import com.panda.a6o6test.telemetry.TelemetryConstants;
+
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * A subclass of SurfaceView with "HUD" drawn over, reacting to orientation and face detection
+ * A subclass of SurfaceView with "HUD" drawn over, reacting to orientation and face detection.
+ * A long press toggles an overlay with the latencies of {@link LatencyTracer}.
  */
 public class CameraSurfaceView extends SurfaceView implements RotationOrientationListener, FaceRectReceiver {
 
-    private Paint paintFace, paintHud, paintBounds;
-    private RectF rectFace;
+    // orientation changes smaller than this do not move the HUD by a visible amount
+    private static final float HUD_EPSILON_DEG = 0.05f;
+
+    private static final long NO_ORIENTATION = packOrientation(Float.NaN, Float.NaN);
+
+    private final HudRenderScheduler renderScheduler = new HudRenderScheduler(this);
+    private final Matrix hudMatrix = new Matrix();
+
+    // latest pitch and roll packed into one long, handed from the sensor thread to the main thread
+    private final AtomicLong latestOrientation = new AtomicLong(NO_ORIENTATION);
+    private long appliedOrientation = NO_ORIENTATION;
+    // sensor timestamp of the latest orientation, written before it is published
+    private volatile long latestOrientationNanos;
+
+    // face results are published from the camera thread, mapping into view coordinates happens on draw
+    private final FaceResultSlot faceSlot = new FaceResultSlot();
+    // confined to the camera thread
+    private final Rect lastFaceSource = new Rect();
+    private boolean hasFace;
+    private final SensorToViewTransform faceTransform = new SensorToViewTransform();
+    private final float[] mappedFace = new float[4];
+    private final RectF rectFace = new RectF();
+    // confined to the main thread
+    private long drawnFaceNanos;
+
+    private final LatencyTracer.Stage[] overlayStages = LatencyTracer.Stage.values();
+    private final String[] overlayLines = new String[overlayStages.length];
+    private boolean latencyOverlay;
+    private float overlayLineHeight;
+    private final Runnable overlayRefresh = new Runnable() {
+        @Override
+        public void run() {
+            // text is built here rather than in onDraw, at a pace slow enough to read
+            for (int i = 0; i < overlayStages.length; i++) {
+                overlayLines[i] = LatencyTracer.getInstance().describe(overlayStages[i]);
+            }
+            renderScheduler.requestRender();
+            postDelayed(this, TelemetryConstants.LATENCY_OVERLAY_REFRESH_MILLIS);
+        }
+    };
+
+    private Paint paintFace, paintHud, paintBounds, paintOverlay;
     private Path rotatedPlane, plane, horizon, shiftedHorizon, horizonBounds, rollBounds, shiftedRollBounds;
+    // confined to the sensor thread
+    private float lastPitch = Float.NaN, lastRoll = Float.NaN;
 
     public CameraSurfaceView(Context context) {
         super(context);
@@ -55,30 +103,107 @@ public class CameraSurfaceView extends SurfaceView implements RotationOrientatio
         paintBounds.setStyle(Paint.Style.STROKE);
         paintBounds.setColor(context.getColor(R.color.hud_static));
 
+        paintOverlay = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paintOverlay.setTextSize(context.getResources().getDimension(R.dimen.latencyOverlayTextSize));
+        paintOverlay.setColor(context.getColor(R.color.latency_overlay_text));
+        overlayLineHeight = paintOverlay.getFontSpacing();
+
+        setOnLongClickListener(v -> {
+            setLatencyOverlay(!latencyOverlay);
+            return true;
+        });
+
         //a way of ensuring view exists and has dimensions
         this.post(() -> {
             setWillNotDraw(false);
             initPaths(getWidth(), getHeight());
+            renderScheduler.requestRender();
         });
     }
 
     @Override
-    public void setFaceRect(Rect rect){
-        if(rect != null){
-            this.rectFace = new RectF(rect);
-            Matrix matrix = new Matrix();
-            matrix.setScale(-1, 1);
-            matrix.postRotate(90);
-
-            //just guessing the scale - no time for playing with adapting the image sizes
-            matrix.postScale(0.6f, 0.6f);
-
-            matrix.postTranslate(getMeasuredWidth(), getMeasuredHeight());
-            matrix.mapRect(this.rectFace);
-            matrix.reset();
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        renderScheduler.start();
+        // replaces the gauges of a previous view, counts start over with each view
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("hud.renderedFrames", this::getRenderedFrames);
+        metrics.gauge("hud.skippedFrames", this::getSkippedFrames);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        setLatencyOverlay(false);
+        renderScheduler.stop();
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * @return number of vsync frames in which the HUD was redrawn
+     */
+    public long getRenderedFrames(){
+        return renderScheduler.getRenderedFrames();
+    }
+
+    /**
+     * @return number of vsync frames skipped because neither orientation nor face changed
+     */
+    public long getSkippedFrames(){
+        return renderScheduler.getSkippedFrames();
+    }
+
+    /**
+     * Shows or hides per-stage latency percentiles over the HUD, on the main thread
+     */
+    public void setLatencyOverlay(boolean show){
+        if(show == latencyOverlay){
+            return;
+        }
+        latencyOverlay = show;
+        removeCallbacks(overlayRefresh);
+        if(show){
+            overlayRefresh.run();
         }else{
-            this.rectFace = null;
+            renderScheduler.requestRender();
+        }
+    }
+
+    // called on the camera thread
+    @Override
+    public void setFaceRect(Rect rect, long timestampNanos){
+        if(rect == null ? !hasFace : hasFace && rect.equals(lastFaceSource)){
+            return;
+        }
+        hasFace = rect != null;
+        FaceResultSlot.FaceSample sample = faceSlot.beginWrite();
+        sample.present = hasFace;
+        sample.timestampNanos = timestampNanos;
+        if(hasFace){
+            lastFaceSource.set(rect);
+            sample.left = rect.left;
+            sample.top = rect.top;
+            sample.right = rect.right;
+            sample.bottom = rect.bottom;
         }
+        faceSlot.publish();
+        renderScheduler.requestRender();
+    }
+
+    @Override
+    public void setSensorGeometry(Rect activeArraySize, int sensorOrientation, boolean mirrored) {
+        final int width = activeArraySize.width();
+        final int height = activeArraySize.height();
+        post(() -> {
+            if(faceTransform.setSensorGeometry(width, height, sensorOrientation, mirrored)){
+                renderScheduler.requestRender();
+            }
+        });
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        faceTransform.setViewSize(w, h);
     }
 
     // init HUD shapes
@@ -121,24 +246,65 @@ public class CameraSurfaceView extends SurfaceView implements RotationOrientatio
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        if(rectFace !=null) {
+        LatencyTracer.beginSection("HUD.draw");
+        applyLatestOrientation();
+        FaceResultSlot.FaceSample face = faceSlot.latest();
+        if(face.timestampNanos != drawnFaceNanos){
+            drawnFaceNanos = face.timestampNanos;
+            LatencyTracer.getInstance().record(LatencyTracer.Stage.CAPTURE_TO_FACE_DRAW, drawnFaceNanos);
+        }
+        if(face.present && faceTransform.isValid()) {
+            faceTransform.mapRect(face.left, face.top, face.right, face.bottom, mappedFace);
+            rectFace.set(mappedFace[0], mappedFace[1], mappedFace[2], mappedFace[3]);
             canvas.drawRect(rectFace, paintFace);
         }
         canvas.drawPath(horizonBounds, paintBounds);
         canvas.drawPath(shiftedRollBounds, paintBounds);
         canvas.drawPath(rotatedPlane, paintHud);
         canvas.drawPath(shiftedHorizon, paintHud);
-        postInvalidate();
+        if(latencyOverlay){
+            drawLatencyOverlay(canvas);
+        }
+        LatencyTracer.endSection();
+    }
+
+    private void drawLatencyOverlay(Canvas canvas) {
+        float y = overlayLineHeight;
+        for (String line : overlayLines) {
+            if(line != null){
+                canvas.drawText(line, overlayLineHeight, y, paintOverlay);
+            }
+            y += overlayLineHeight;
+        }
     }
 
+    // called on the sensor thread, only publishes the values and schedules a frame
     @Override
-    public void onOrientationChanged(float pitch, float roll) {
-        if(plane == null || horizon == null){
+    public void onOrientationChanged(float pitch, float roll, long timestampNanos) {
+        if(Math.abs(pitch - lastPitch) < HUD_EPSILON_DEG && Math.abs(roll - lastRoll) < HUD_EPSILON_DEG){
             return;
         }
+        lastPitch = pitch;
+        lastRoll = roll;
+        latestOrientationNanos = timestampNanos;
+        latestOrientation.set(packOrientation(pitch, roll));
+        renderScheduler.requestRender();
+    }
+
+    // moves HUD paths to the latest published orientation, on the main thread
+    private void applyLatestOrientation() {
+        long orientation = latestOrientation.get();
+        if(orientation == appliedOrientation || plane == null || horizon == null){
+            return;
+        }
+        appliedOrientation = orientation;
+        // may already belong to a newer orientation, which only makes the latency look slightly better
+        LatencyTracer.getInstance().record(LatencyTracer.Stage.SENSOR_TO_DRAW, latestOrientationNanos);
+        float pitch = Float.intBitsToFloat((int) (orientation >>> 32));
+        float roll = Float.intBitsToFloat((int) orientation);
 
         float dy = pitch * (getHeight()/180f);
-        Matrix rm = new Matrix();
+        Matrix rm = hudMatrix;
         rm.setRotate(roll, getWidth()/2f, getHeight()/2f);
         rm.postTranslate(0, dy);
         plane.transform(rm, rotatedPlane);
@@ -147,4 +313,8 @@ public class CameraSurfaceView extends SurfaceView implements RotationOrientatio
         horizon.transform(rm, shiftedHorizon);
         rollBounds.transform(rm, shiftedRollBounds);
     }
+
+    private static long packOrientation(float pitch, float roll) {
+        return ((long) Float.floatToRawIntBits(pitch) << 32) | (Float.floatToRawIntBits(roll) & 0xFFFFFFFFL);
+    }
 }
@@ -5,7 +5,16 @@ import android.graphics.Rect;
 public interface FaceRectReceiver {
 
     /**
-     * @param rect Bounds of the detected face
+     * @param rect Bounds of the detected face, in active array coordinates
+     * @param timestampNanos capture time of the frame, see {@link com.panda.a6o6test.telemetry.LatencyTracer#now()}
      */
-    void setFaceRect(Rect rect);
+    void setFaceRect(Rect rect, long timestampNanos);
+
+    /**
+     * Describes the coordinate system of rects passed to {@link FaceRectReceiver#setFaceRect(Rect, long)}
+     * @param activeArraySize SENSOR_INFO_ACTIVE_ARRAY_SIZE of the camera
+     * @param sensorOrientation SENSOR_ORIENTATION of the camera
+     * @param mirrored whether the preview is mirrored, as for front facing cameras
+     */
+    void setSensorGeometry(Rect activeArraySize, int sensorOrientation, boolean mirrored);
 }
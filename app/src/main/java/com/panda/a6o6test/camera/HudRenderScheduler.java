@@ -0,0 +1,112 @@
+package com.panda.a6o6test.camera;
+
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.View;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Paces HUD redraws on vsync using {@link Choreographer} frame callbacks.
+ * A frame is rendered only after {@link #requestRender()} was called, otherwise the scheduler stays idle
+ * and no callbacks are posted at all.
+ */
+class HudRenderScheduler implements Choreographer.FrameCallback {
+
+    private static final long DEFAULT_FRAME_INTERVAL_NANOS = 1_000_000_000L / 60;
+
+    private final View view;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+
+    private volatile Choreographer choreographer;
+    private volatile boolean running;
+
+    // confined to the main thread
+    private long frameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+    private long lastRenderTimeNanos;
+
+    private volatile long renderedFrames;
+    private volatile long skippedFrames;
+
+    HudRenderScheduler(View view) {
+        this.view = view;
+    }
+
+    /**
+     * Starts pacing. Must be called on the main thread, usually when the view gets attached.
+     */
+    void start() {
+        choreographer = Choreographer.getInstance();
+        Display display = view.getDisplay();
+        if(display != null && display.getRefreshRate() > 0){
+            frameIntervalNanos = (long) (1_000_000_000L / display.getRefreshRate());
+        }
+        lastRenderTimeNanos = 0;
+        running = true;
+        if(dirty.get()){
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * Stops pacing and drops a pending frame. Must be called on the main thread.
+     */
+    void stop() {
+        running = false;
+        if(choreographer != null){
+            choreographer.removeFrameCallback(this);
+        }
+        frameScheduled.set(false);
+    }
+
+    /**
+     * Marks the HUD as dirty, so it gets redrawn on the next vsync. Safe to call from any thread,
+     * several requests within one frame result in a single redraw.
+     */
+    void requestRender() {
+        dirty.set(true);
+        if(running){
+            scheduleFrame();
+        }
+    }
+
+    private void scheduleFrame() {
+        Choreographer c = choreographer;
+        if(c != null && frameScheduled.compareAndSet(false, true)){
+            c.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled.set(false);
+        if(!running || !dirty.getAndSet(false)){
+            return;
+        }
+        if(lastRenderTimeNanos != 0){
+            // vsyncs that passed since the previous render without anything to draw
+            long elapsedFrames = (frameTimeNanos - lastRenderTimeNanos + frameIntervalNanos / 2) / frameIntervalNanos;
+            if(elapsedFrames > 1){
+                skippedFrames += elapsedFrames - 1;
+            }
+        }
+        lastRenderTimeNanos = frameTimeNanos;
+        renderedFrames++;
+        view.invalidate();
+    }
+
+    /**
+     * @return number of vsync frames in which the HUD was redrawn
+     */
+    long getRenderedFrames() {
+        return renderedFrames;
+    }
+
+    /**
+     * @return number of vsync frames in which the HUD was left untouched because nothing changed
+     */
+    long getSkippedFrames() {
+        return skippedFrames;
+    }
+}
@@ -0,0 +1,96 @@
+package com.panda.a6o6test.camera;
+
+import android.graphics.Rect;
+
+import com.panda.a6o6test.analysis.FrameAnalyzer;
+import com.panda.a6o6test.analysis.LumaDownscaler;
+import com.panda.a6o6test.analysis.LumaFaceDetector;
+import com.panda.a6o6test.analysis.YuvFrame;
+import com.panda.a6o6test.telemetry.LatencyTracer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Face detection on the CPU for cameras without face statistics.
+ * On the analysis thread frames are only rate limited and downscaled into a small upright luma image,
+ * detection itself runs on a worker, at most one at a time; frames arriving meanwhile are skipped.
+ * Results are reported in active array coordinates, like the HAL's faces.
+ */
+class SoftwareFaceAnalyzer implements FrameAnalyzer {
+
+    private final FaceRectReceiver receiver;
+    private final int sensorOrientation;
+    private final boolean realtimeTimestamps;
+    private final Rect activeArray;
+    private final long minIntervalNanos;
+    private final int width = CameraConstants.SOFTWARE_FACE_WIDTH;
+    private final int height = CameraConstants.SOFTWARE_FACE_HEIGHT;
+    private final int[] luma = new int[width * height];
+    // capture time of luma, handed to the worker together with it
+    private long lumaTimestampNanos;
+    private final int[] bounds = new int[4];
+    private final int[] mapped = new int[4];
+    private final LumaFaceDetector detector = new LumaFaceDetector(width, height, CameraConstants.SOFTWARE_FACE_MIN_SIZE);
+    private final AtomicBoolean busy = new AtomicBoolean();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> new Thread(r, "FaceDetect"));
+    private final Runnable detectTask = this::detect;
+
+    // confined to the analysis thread
+    private long lastFrameNanos;
+
+    /**
+     * @param receiver gets the face bounds in active array coordinates, or null when there is no face
+     * @param rateHz maximum number of detections per second
+     */
+    SoftwareFaceAnalyzer(CameraSelection selection, FaceRectReceiver receiver, int rateHz) {
+        this.receiver = receiver;
+        this.sensorOrientation = selection.sensorOrientation;
+        this.realtimeTimestamps = selection.realtimeTimestamps;
+        this.activeArray = selection.activeArraySize != null ? selection.activeArraySize : new Rect();
+        this.minIntervalNanos = 1_000_000_000L / Math.max(rateHz, 1);
+    }
+
+    @Override
+    public void analyze(YuvFrame frame) {
+        long timestamp = frame.getTimestampNanos();
+        if(lastFrameNanos != 0 && timestamp - lastFrameNanos < minIntervalNanos){
+            return;
+        }
+        if(!busy.compareAndSet(false, true)){
+            return;
+        }
+        lastFrameNanos = timestamp;
+        lumaTimestampNanos = LatencyTracer.fromCameraTimestamp(timestamp, realtimeTimestamps);
+        // the image goes back to the camera once analyze returns, so only the small copy is handed over
+        LumaDownscaler.downscale(frame.getBuffer(YuvFrame.Y), frame.getRowStride(YuvFrame.Y), frame.getPixelStride(YuvFrame.Y),
+                frame.getWidth(), frame.getHeight(), sensorOrientation, luma, width, height);
+        worker.execute(detectTask);
+    }
+
+    /**
+     * Stops the worker, a running detection still reports its result
+     */
+    void shutdown() {
+        worker.shutdown();
+    }
+
+    // worker thread, owns luma until busy is cleared
+    private void detect() {
+        try {
+            if(detector.detect(luma, bounds) && !activeArray.isEmpty()){
+                // the analysis stream has the aspect ratio of the active array and covers all of it
+                LumaDownscaler.mapToSource(bounds[0], bounds[1], bounds[2], bounds[3], width, height,
+                        sensorOrientation, activeArray.width(), activeArray.height(), mapped);
+                Rect face = new Rect(mapped[0], mapped[1], mapped[2], mapped[3]);
+                face.offset(activeArray.left, activeArray.top);
+                receiver.setFaceRect(face, lumaTimestampNanos);
+            }else{
+                receiver.setFaceRect(null, lumaTimestampNanos);
+            }
+        } finally {
+            busy.set(false);
+        }
+    }
+}
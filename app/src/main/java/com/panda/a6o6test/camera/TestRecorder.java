@@ -0,0 +1,297 @@
+package com.panda.a6o6test.camera;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Records TEST sessions with a hardware encoder fed straight from the camera through a persistent input surface.
+ * The surface stays part of the capture session, a recording starts and stops by adding it to or removing it from
+ * the repeating request, so the camera is never reconfigured. Codec and muxer run on a "Recorder" thread.
+ * Only the newest {@link CameraConstants#RECORDING_MAX_FILES} recordings are kept.
+ */
+class TestRecorder {
+
+    private static final String TAG = "TestRecorder";
+    private static final String PREFIX = "test_";
+    private static final String EXTENSION = ".mp4";
+
+    private final File directory;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Surface inputSurface;
+    private final MediaFormat format;
+    private final int orientationHint;
+    private final MediaCodec codec;
+
+    private volatile boolean recording;
+
+    // confined to the recorder thread
+    private boolean stopping;
+    private MediaMuxer muxer;
+    private int track = -1;
+    private File file;
+    private Handler callbackHandler;
+    private Runnable onFailed;
+    // a start that came while the previous recording was finishing, run once the encoder is ready again
+    private Runnable pendingStart;
+
+    /**
+     * Creates and configures the encoder, so its surface already has a size when the session is created.
+     * Called on the camera thread.
+     * @param directory where recordings are written
+     * @param width encoded width, one of the camera's MediaCodec output sizes
+     * @param height encoded height
+     * @param orientationHint clockwise rotation stored in the file for players
+     * @throws IOException if no encoder for {@link CameraConstants#RECORDING_MIME} exists
+     */
+    TestRecorder(File directory, int width, int height, int orientationHint) throws IOException {
+        this.directory = directory;
+        this.orientationHint = orientationHint;
+        format = MediaFormat.createVideoFormat(CameraConstants.RECORDING_MIME, width, height);
+        format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, CameraConstants.RECORDING_BIT_RATE);
+        format.setInteger(MediaFormat.KEY_FRAME_RATE, CameraConstants.TARGET_PREVIEW_FPS);
+        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, CameraConstants.RECORDING_I_FRAME_INTERVAL_SECONDS);
+
+        thread = new HandlerThread("Recorder");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        inputSurface = MediaCodec.createPersistentInputSurface();
+        MediaCodec created = null;
+        try {
+            created = MediaCodec.createEncoderByType(CameraConstants.RECORDING_MIME);
+            codec = created;
+            configure();
+        } catch (IOException | RuntimeException e) {
+            if(created != null){
+                created.release();
+            }
+            inputSurface.release();
+            thread.quitSafely();
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+    }
+
+    /**
+     * @return surface to add to the capture session
+     */
+    Surface getSurface() {
+        return inputSurface;
+    }
+
+    /**
+     * Starts encoding into a new file. The surface must not be targeted before onStarted ran,
+     * a stalled encoder would stall the camera. While a previous recording is still finishing,
+     * the start is delayed until it is done.
+     * @param callbackHandler handler onStarted and onFailed are posted to
+     * @param onStarted called once the encoder accepts frames
+     * @param onFailed called if this recording could not start, stopped on an encoder error or left no usable file,
+     *                 the encoder is not running anymore and its surface must not be targeted
+     */
+    void start(Handler callbackHandler, Runnable onStarted, Runnable onFailed) {
+        handler.post(() -> begin(callbackHandler, onStarted, onFailed));
+    }
+
+    // recorder thread
+    private void begin(Handler callbackHandler, Runnable onStarted, Runnable onFailed) {
+        if(stopping){
+            pendingStart = () -> begin(callbackHandler, onStarted, onFailed);
+            return;
+        }
+        if(recording){
+            return;
+        }
+        this.callbackHandler = callbackHandler;
+        this.onFailed = onFailed;
+        pruneOldFiles();
+        try {
+            file = new File(directory, PREFIX + System.currentTimeMillis() + EXTENSION);
+            muxer = new MediaMuxer(file.getPath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            muxer.setOrientationHint(orientationHint);
+            track = -1;
+            codec.start();
+            recording = true;
+            callbackHandler.post(onStarted);
+        } catch (IOException | IllegalStateException e) {
+            Log.e(TAG, "Could not start recording", e);
+            releaseMuxer();
+            reportFailure();
+        }
+    }
+
+    /**
+     * Ends the recording, the encoder drains and the file is finished on the recorder thread.
+     * The surface should already be removed from the repeating request. Also drops a delayed start.
+     */
+    void stop() {
+        handler.post(() -> {
+            pendingStart = null;
+            if(!recording){
+                return;
+            }
+            recording = false;
+            stopping = true;
+            codec.signalEndOfInputStream();
+        });
+    }
+
+    /**
+     * Stops a running recording and frees encoder, surface and thread. Called after the camera was closed.
+     */
+    void release() {
+        handler.post(() -> {
+            pendingStart = null;
+            if(recording || stopping){
+                recording = false;
+                stopping = false;
+                codec.stop();
+                finishFile();
+            }
+            codec.release();
+            inputSurface.release();
+            thread.quitSafely();
+        });
+    }
+
+    /**
+     * @return whether frames are being encoded
+     */
+    boolean isRecording() {
+        return recording;
+    }
+
+    // recorder thread, leaves the codec configured and ready for the next start
+    private void configure() {
+        codec.setCallback(codecCallback, handler);
+        codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+        codec.setInputSurface(inputSurface);
+    }
+
+    // recorder thread
+    private void onEndOfStream() {
+        stopping = false;
+        codec.stop();
+        if(!finishFile()){
+            reportFailure();
+        }
+        codec.reset();
+        configure();
+        runPendingStart();
+    }
+
+    // recorder thread
+    private void runPendingStart() {
+        Runnable start = pendingStart;
+        pendingStart = null;
+        if(start != null){
+            start.run();
+        }
+    }
+
+    // recorder thread, a muxer that never got a sample cannot be stopped and leaves no usable file
+    private boolean finishFile() {
+        if(muxer == null){
+            return false;
+        }
+        boolean finished = false;
+        try {
+            if(track >= 0){
+                muxer.stop();
+                finished = true;
+                Log.i(TAG, "Recorded " + file);
+            }
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Could not finish " + file, e);
+        }
+        releaseMuxer();
+        return finished;
+    }
+
+    // recorder thread
+    private void reportFailure() {
+        if(callbackHandler != null){
+            callbackHandler.post(onFailed);
+        }
+    }
+
+    // recorder thread, file names start with the creation time, so name order is age order
+    private void pruneOldFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(EXTENSION));
+        if(files == null || files.length < CameraConstants.RECORDING_MAX_FILES){
+            return;
+        }
+        Arrays.sort(files);
+        for (int i = 0; i <= files.length - CameraConstants.RECORDING_MAX_FILES; i++) {
+            if(!files[i].delete()){
+                Log.w(TAG, "Cannot delete " + files[i]);
+            }
+        }
+    }
+
+    private void releaseMuxer() {
+        if(muxer != null){
+            muxer.release();
+            muxer = null;
+        }
+        track = -1;
+    }
+
+    private final MediaCodec.Callback codecCallback = new MediaCodec.Callback() {
+        @Override
+        public void onInputBufferAvailable(@NonNull MediaCodec mediaCodec, int i) {
+            // input comes through the surface
+        }
+
+        @Override
+        public void onOutputBufferAvailable(@NonNull MediaCodec mediaCodec, int index, @NonNull MediaCodec.BufferInfo info) {
+            ByteBuffer buffer = mediaCodec.getOutputBuffer(index);
+            // codec config is already part of the track format
+            boolean config = (info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+            if(buffer != null && !config && info.size > 0 && track >= 0){
+                buffer.position(info.offset);
+                buffer.limit(info.offset + info.size);
+                muxer.writeSampleData(track, buffer, info);
+            }
+            mediaCodec.releaseOutputBuffer(index, false);
+            if((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0){
+                onEndOfStream();
+            }
+        }
+
+        @Override
+        public void onError(@NonNull MediaCodec mediaCodec, @NonNull MediaCodec.CodecException e) {
+            Log.e(TAG, "Encoder error", e);
+            if(recording || stopping){
+                recording = false;
+                stopping = false;
+                // what was encoded is kept, but the recording is incomplete and the encoder stops here
+                finishFile();
+                reportFailure();
+            }
+            codec.reset();
+            configure();
+            runPendingStart();
+        }
+
+        @Override
+        public void onOutputFormatChanged(@NonNull MediaCodec mediaCodec, @NonNull MediaFormat mediaFormat) {
+            if(muxer != null && track < 0){
+                track = muxer.addTrack(mediaFormat);
+                muxer.start();
+            }
+        }
+    };
+}
@@ -0,0 +1,78 @@
+package com.panda.a6o6test.logic;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Delivers states to listeners on the main thread at most once per vsync.
+ * States published within one frame overwrite each other in a single pending slot, so listeners
+ * only see the latest one and stale intermediate states never reach the main looper.
+ */
+class FrameStateDispatcher implements Choreographer.FrameCallback {
+
+    private final List<MainStateListener> listeners;
+    private final AtomicReference<MainLogicState> pendingState = new AtomicReference<>();
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable scheduleOnMain = this::scheduleFrame;
+    private volatile Choreographer choreographer;
+    private volatile long droppedStates;
+
+    // confined to the main thread
+    private MainLogicState lastDelivered;
+
+    FrameStateDispatcher(List<MainStateListener> listeners) {
+        this.listeners = listeners;
+        if(Looper.myLooper() == Looper.getMainLooper()){
+            choreographer = Choreographer.getInstance();
+        }
+    }
+
+    /**
+     * Publishes a state for delivery on the next frame. Called from the state machine looper.
+     */
+    void publish(MainLogicState state) {
+        if(pendingState.getAndSet(state) != null){
+            droppedStates++;
+        }
+        if(frameScheduled.compareAndSet(false, true)){
+            Choreographer c = choreographer;
+            if(c != null){
+                c.postFrameCallback(this);
+            }else{
+                // Choreographer is per looper, the main one has to be obtained on the main thread
+                mainHandler.post(scheduleOnMain);
+            }
+        }
+    }
+
+    private void scheduleFrame() {
+        choreographer = Choreographer.getInstance();
+        choreographer.postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled.set(false);
+        MainLogicState state = pendingState.getAndSet(null);
+        if(state == null || state == lastDelivered){
+            return;
+        }
+        lastDelivered = state;
+        for (MainStateListener listener : listeners) {
+            listener.onStateChanged(state);
+        }
+    }
+
+    /**
+     * @return states that were overwritten by a newer one before their frame came
+     */
+    long getDroppedStates() {
+        return droppedStates;
+    }
+}
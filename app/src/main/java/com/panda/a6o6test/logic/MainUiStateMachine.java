@@ -1,61 +1,161 @@
 package com.panda.a6o6test.logic;
 
 import android.os.Handler;
-import android.os.Looper;
+import android.os.HandlerThread;
 
-import com.panda.a6o6test.sensors.SensorConstants;
+import com.panda.a6o6test.telemetry.LatencyTracer;
+import com.panda.a6o6test.telemetry.MetricsRegistry;
+import com.panda.a6o6test.telemetry.TelemetryLog;
+import com.panda.a6o6test.telemetry.TelemetrySession;
 import com.panda.a6o6test.ui.SimplePauseResumeListener;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * A FSM to coordinate transitions between all possible states of the UI
+ * A FSM to coordinate transitions between all possible states of the UI.
+ * Public transition methods may be called from any thread: they only post an event to a lock-free queue,
+ * which is drained in batches on a dedicated looper. The state itself is confined to that looper,
+ * in a {@link StateMachineCore} deciding the transitions.
  */
 public class MainUiStateMachine implements SimplePauseResumeListener {
 
+    private static final int QUEUE_CAPACITY = 256;
+    private static final int DRAIN_BATCH = 64;
+
     private static final MainUiStateMachine instance = new MainUiStateMachine();
-    private final List<MainStateListener> listeners = new ArrayList<>();
-    private MainLogicState state = MainLogicState.NO_PERMISSION;
-    private Handler handler;
+    // copy-on-write, so listeners may be added or removed while a dispatch is in progress
+    private final CopyOnWriteArrayList<MainStateListener> frameListeners = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<MainStateListener> losslessListeners = new CopyOnWriteArrayList<>();
+    private final FrameStateDispatcher frameDispatcher = new FrameStateDispatcher(frameListeners);
+    private final StateEventQueue queue = new StateEventQueue(QUEUE_CAPACITY);
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final Handler handler;
+    private final Runnable drainTask = this::drainEvents;
+    private final Runnable confirmAngleTask = () -> apply(StateEvent.CONFIRM_ANGLE);
+    private final StateEventQueue.Consumer eventConsumer = this::onEvent;
+    private final TransitionTable transitions = TransitionTable.getDefault();
+    private final StateMachineCore.Timer confirmAngleTimer = new StateMachineCore.Timer() {
+        @Override
+        public void schedule(long delayMillis) {
+            handler.removeCallbacks(confirmAngleTask);
+            handler.postDelayed(confirmAngleTask, delayMillis);
+        }
+
+        @Override
+        public void cancel() {
+            handler.removeCallbacks(confirmAngleTask);
+        }
+    };
+    // confined to the state machine looper
+    private final StateMachineCore core = new StateMachineCore(transitions, confirmAngleTimer, this::onTransition);
+    private final MetricsRegistry.Counter[] stateEntries = new MetricsRegistry.Counter[MainLogicState.values().length];
+    private final MetricsRegistry.Counter[] stateMillis = new MetricsRegistry.Counter[MainLogicState.values().length];
 
-    private MainUiStateMachine(){}
+    // confined to the state machine looper
+    private int lastEventInBatch = -1;
+    private long stateEnteredNanos = System.nanoTime();
+    private volatile long coalescedEvents;
+    // written on the state machine looper, read from anywhere
+    private volatile MainLogicState currentState = MainLogicState.NO_PERMISSION;
+
+    private MainUiStateMachine(){
+        HandlerThread thread = new HandlerThread("StateMachine");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        for (MainLogicState state : MainLogicState.values()) {
+            stateEntries[state.ordinal()] = metrics.counter("state.entries." + state);
+            // the current state is only accounted once it is left
+            stateMillis[state.ordinal()] = metrics.counter("state.millis." + state);
+        }
+        metrics.gauge("state.droppedEvents", droppedEvents::get);
+        metrics.gauge("state.coalescedEvents", () -> coalescedEvents);
+    }
 
     public static MainUiStateMachine getInstance(){
         return instance;
     }
 
-    private void setState(MainLogicState state){
-        this.state = state;
-        notifyListeners();
+    private void post(StateEvent event){
+        // the post time travels with the entry, so the queue latency is that of the event applied
+        if(!queue.offer(event.ordinal(), LatencyTracer.now())){
+            droppedEvents.incrementAndGet();
+        }
+        if(drainScheduled.compareAndSet(false, true)){
+            handler.post(drainTask);
+        }
+    }
+
+    private void drainEvents(){
+        drainScheduled.set(false);
+        lastEventInBatch = -1;
+        LatencyTracer.beginSection("StateMachine.drain");
+        if(queue.drain(eventConsumer, DRAIN_BATCH) == DRAIN_BATCH && drainScheduled.compareAndSet(false, true)){
+            // more events pending, give the looper a chance to run timers in between
+            handler.post(drainTask);
+        }
+        LatencyTracer.endSection();
+    }
+
+    // applying the same event twice in a row never changes the outcome, so repeats within a batch are dropped
+    private void onEvent(int event, long postedNanos){
+        if(event == lastEventInBatch){
+            coalescedEvents++;
+            return;
+        }
+        LatencyTracer.getInstance().record(LatencyTracer.Stage.STATE_QUEUE, postedNanos);
+        lastEventInBatch = event;
+        apply(StateEvent.fromOrdinal(event));
+    }
+
+    private void apply(StateEvent event){
+        core.apply(event);
+    }
 
-        decideOnTimedTransition(this.state);
+    // every transition is recorded before listeners see the new state
+    private void onTransition(MainLogicState from, MainLogicState to, StateEvent event){
+        TelemetryLog log = TelemetrySession.getInstance().getLog();
+        if(log != null){
+            log.appendState(TelemetrySession.now(), from.ordinal(), to.ordinal(), event.ordinal());
+        }
+        long now = System.nanoTime();
+        stateMillis[from.ordinal()].add((now - stateEnteredNanos) / 1_000_000);
+        stateEntries[to.ordinal()].increment();
+        stateEnteredNanos = now;
+        currentState = to;
+        notifyListeners(to);
     }
 
-    private void notifyListeners(){
-        for (MainStateListener listener: listeners) {
+    private void notifyListeners(MainLogicState state){
+        for (MainStateListener listener: losslessListeners) {
             listener.onStateChanged(state);
         }
+        frameDispatcher.publish(state);
+    }
+
+    /**
+     * @return state after the latest transition, e.g. to catch up with one that happened before a listener was added
+     */
+    public MainLogicState getState(){
+        return currentState;
     }
 
     /**
      * On bad orientation of device
      */
     public void toBadAngle(){
-        if(state.equals(MainLogicState.IDLE) || state.equals(MainLogicState.NO_FACE)
-                || state.equals(MainLogicState.CONFIRMED_ANGLE) || state.equals(MainLogicState.ALL_GO)
-                || state.equals(MainLogicState.WAITING_ANGLE)){
-            setState(MainLogicState.BAD_ANGLE);
-        }
+        post(StateEvent.BAD_ANGLE);
     }
 
     /**
      * On permission or error resolved, allowing further work
      */
     public void toIdle(){
-        if(state.equals(MainLogicState.NO_PERMISSION) || state.equals(MainLogicState.ERROR)){
-            setState(MainLogicState.IDLE);
-        }
+        post(StateEvent.IDLE);
     }
 
     /**
@@ -63,9 +163,7 @@ public class MainUiStateMachine implements SimplePauseResumeListener {
      * Distinct from {@link MainUiStateMachine#toNoFaceFromDetection()} to use different condition
      */
     public void toNoFaceFromButton(){
-        if(state.equals(MainLogicState.CONFIRMED_ANGLE)){
-            setState(MainLogicState.NO_FACE);
-        }
+        post(StateEvent.NO_FACE_FROM_BUTTON);
     }
 
     /**
@@ -73,69 +171,68 @@ public class MainUiStateMachine implements SimplePauseResumeListener {
      * Distinct from {@link MainUiStateMachine#toNoFaceFromButton()} to use different condition
      */
     public void toNoFaceFromDetection(){
-        if(state.equals(MainLogicState.ALL_GO)){
-            setState(MainLogicState.NO_FACE);
-        }
-    }
-
-
-    // On orientation being within acceptable bounds for the timer duration.
-    // Private because the transition is governed internally in the state machine.
-    private void confirmAngle(){
-        if(state.equals(MainLogicState.WAITING_ANGLE)){
-            setState(MainLogicState.CONFIRMED_ANGLE);
-        }
+        post(StateEvent.NO_FACE_FROM_DETECTION);
     }
 
     /**
      * On orientation within acceptable bounds
      */
     public void toGoodAngle(){
-        if(state.equals(MainLogicState.BAD_ANGLE)){
-            setState(MainLogicState.WAITING_ANGLE);
-        }
+        post(StateEvent.GOOD_ANGLE);
     }
 
     /**
      * On face detected, allowing to proceed to test
      */
     public void toAllGo(){
-        if(state.equals(MainLogicState.NO_FACE)){
-            setState(MainLogicState.ALL_GO);
+        post(StateEvent.ALL_GO);
+    }
+
+    /**
+     * On a change of the frame quality verdict, gates {@link MainUiStateMachine#toAllGo()}
+     * @param good whether frames are bright and sharp enough for a test
+     */
+    public void onFrameQuality(boolean good){
+        TelemetryLog log = TelemetrySession.getInstance().getLog();
+        if(log != null){
+            // frames are not recorded, so replays take the verdict as it was
+            log.appendQuality(TelemetrySession.now(), good);
         }
+        post(good ? StateEvent.QUALITY_OK : StateEvent.QUALITY_BAD);
     }
 
     /**
      * On button press to start test
      */
     public void toTest(){
-        if(state.equals(MainLogicState.ALL_GO)){
-            setState(MainLogicState.TEST);
-        }
+        post(StateEvent.TEST);
     }
 
     /**
      * On any error except missing permission
      */
     public void toError(){
-        setState(MainLogicState.ERROR);
+        post(StateEvent.ERROR);
     }
 
     /**
      * On missing camera permission
      */
     public void toNoPermission(){
-        if(!state.equals(MainLogicState.TEST)){
-            setState(MainLogicState.NO_PERMISSION);
-        }
+        post(StateEvent.NO_PERMISSION);
     }
 
     /**
-     *
+     * Listeners are notified on the main thread with the latest state of each frame,
+     * unless {@link MainStateListener#isLossless()} asks for every transition on the state machine looper.
      * @param listener to receive notifications upon changing states
      */
     public void addStateListener(MainStateListener listener){
-        listeners.add(listener);
+        if(listener.isLossless()){
+            losslessListeners.addIfAbsent(listener);
+        }else{
+            frameListeners.addIfAbsent(listener);
+        }
     }
 
     /**
@@ -143,45 +240,45 @@ public class MainUiStateMachine implements SimplePauseResumeListener {
      * @param listener
      */
     public void removeListener(MainStateListener listener){
-        listeners.remove(listener);
+        losslessListeners.remove(listener);
+        frameListeners.remove(listener);
     }
 
-    @Override
-    public void onPause() {
-        resetTimedTransition();
-        handler = null;
+    /**
+     * @return legal transitions, e.g. to dump the graph or check it for unreachable states
+     */
+    public TransitionTable getTransitionTable(){
+        return transitions;
     }
 
-    @Override
-    public void onResume() {
-        handler = new Handler(Looper.getMainLooper());
+    /**
+     * @return events rejected because the queue was full
+     */
+    public long getDroppedEvents(){
+        return droppedEvents.get();
     }
 
-    // schedule transition if phone started being upright, cancel on any other state
-    private void decideOnTimedTransition(MainLogicState state){
-        if(!state.equals(MainLogicState.WAITING_ANGLE)){
-            resetTimedTransition();
-        }else{
-            postTimedTransition();
-        }
+    /**
+     * @return states never delivered to frame listeners because a newer state arrived within the same frame
+     */
+    public long getDroppedFrameStates(){
+        return frameDispatcher.getDroppedStates();
     }
 
-    private void resetTimedTransition(){
-        if(handler != null){
-            handler.removeCallbacksAndMessages(null);
-        }
+    /**
+     * @return repeated events skipped while draining a batch
+     */
+    public long getCoalescedEvents(){
+        return coalescedEvents;
     }
 
-    private void postTimedTransition(){
-        if(handler != null){
-            handler.postDelayed(this::confirmAngle, SensorConstants.UPRIGHT_STABLE_TIME_MILLIS);
-        }
+    @Override
+    public void onPause() {
+        post(StateEvent.PAUSE);
     }
 
-    /**
-     * Possible UI states
-     */
-    public enum MainLogicState{
-        NO_PERMISSION, ERROR, IDLE, BAD_ANGLE, WAITING_ANGLE, CONFIRMED_ANGLE, NO_FACE, ALL_GO, TEST
+    @Override
+    public void onResume() {
+        post(StateEvent.RESUME);
     }
 }
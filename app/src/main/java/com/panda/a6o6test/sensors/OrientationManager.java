@@ -6,26 +6,69 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
 
 import androidx.annotation.Nullable;
 
+import com.panda.a6o6test.logic.MainLogicState;
+import com.panda.a6o6test.logic.MainStateListener;
 import com.panda.a6o6test.logic.MainUiStateMachine;
+import com.panda.a6o6test.telemetry.LatencyTracer;
+import com.panda.a6o6test.telemetry.MetricsRegistry;
+import com.panda.a6o6test.telemetry.TelemetryLog;
+import com.panda.a6o6test.telemetry.TelemetrySession;
 
 /**
  * Listens to sensors, processes orientation.
+ * Sensor events are delivered and processed on a dedicated background thread, living between
+ * {@link #startListening(RotationOrientationListener)} and {@link #stopListening()}.
+ * Only the resulting pitch/roll and state machine events leave that thread.
+ * Sampling rate follows the UI state, see {@link SamplingProfile}.
+ * Without a rotation vector sensor, or in low-cost mode, accelerometer and gyroscope are fused by a {@link GravityFilter}.
  * Logic partially taken from online sample.
  */
-public class OrientationManager implements SensorEventListener {
-
-    private static final int SENSOR_DELAY_MICROS = 16 * 1000; // 16ms for roughly 60fps
+public class OrientationManager implements SensorEventListener, MainStateListener {
 
     private final SensorManager mSensorManager;
 
     @Nullable
     private Sensor rotationVectorSensor;
+    @Nullable
+    private final Sensor accelerometerSensor;
+    @Nullable
+    private final Sensor gyroscopeSensor;
+    // the accelerometer alone is enough for a fused estimate, the gyroscope only makes it follow fast turns
+    @Nullable
+    private Sensor publishingSensor;
+
+    // main thread, like starting and stopping
+    private boolean lowCostMode = SensorConstants.LOW_COST_ORIENTATION;
+    // chosen in startListening, read on the sensor thread
+    private volatile boolean fusion;
+
+    private volatile RotationOrientationListener orientationListener;
 
+    // guarded by this, registration changes come from the main thread and the state machine looper
+    private boolean registered;
+    private SamplingProfile samplingProfile = SamplingProfile.FULL;
+    private HandlerThread sensorThread;
+    private Handler sensorHandler;
+
+    // keeps the sensor path allocation-free
+    private final OrientationProcessor processor = new OrientationProcessor();
+    private final GravityFilter gravityFilter = new GravityFilter();
+
+    private final MetricsRegistry.Counter sensorEvents = MetricsRegistry.getInstance().counter("sensor.events");
+    private final MetricsRegistry.Histogram sensorIntervals = MetricsRegistry.getInstance()
+            .histogram("sensor.intervalMillis", 5, 10, 20, 40, 80, 160, 320);
+    // confined to the sensor thread
     private int mLastAccuracy;
-    private RotationOrientationListener orientationListener;
+    private long lastEventNanos;
+    // the state machine keeps the decision, so only changes are posted
+    private boolean anglePosted;
+    private boolean postedGood;
+    private final Runnable resetTask = this::resetSensorState;
 
     public OrientationManager(Context context) {
         mSensorManager = (SensorManager) context.getSystemService(Activity.SENSOR_SERVICE);
@@ -41,77 +84,223 @@ public class OrientationManager implements SensorEventListener {
         if(rotationVectorSensor == null){
             rotationVectorSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_GAME_ROTATION_VECTOR);
         }
+        accelerometerSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        gyroscopeSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
+
+        // replaces the gauges of a previous manager
+        AngleGate angleGate = processor.getAngleGate();
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("sensor.angle.reportedFlips", angleGate::getReportedFlips);
+        metrics.gauge("sensor.angle.suppressedByHysteresis", angleGate::getSuppressedByHysteresis);
+        metrics.gauge("sensor.angle.suppressedByDwell", angleGate::getSuppressedByDwell);
+    }
+
+    /**
+     * Low-cost mode fuses raw accelerometer and gyroscope instead of the rotation vector sensor,
+     * which is cheaper on devices where the rotation vector is computed in software.
+     * Switches sensors right away if listening. Called on the main thread.
+     * @param lowCostMode whether to prefer the fused orientation even when a rotation vector sensor exists
+     */
+    public void setLowCostMode(boolean lowCostMode) {
+        if(this.lowCostMode == lowCostMode){
+            return;
+        }
+        this.lowCostMode = lowCostMode;
+        RotationOrientationListener listener = orientationListener;
+        if(listener != null){
+            // sensors are only chosen when listening starts
+            stopListening();
+            startListening(listener);
+        }
+    }
+
+    /**
+     * @return whether orientation currently comes from the accelerometer and gyroscope fusion
+     */
+    public boolean isFusion() {
+        return fusion;
     }
 
     /**
      *
-     * @param listener to receive orientation changes
+     * @param listener to receive orientation changes, called on the sensor thread
      */
     public void startListening(RotationOrientationListener listener) {
         if (orientationListener == listener) {
             return;
         }
         orientationListener = listener;
-        if (rotationVectorSensor == null) {
+        fusion = accelerometerSensor != null && (lowCostMode || rotationVectorSensor == null);
+        if(fusion){
+            publishingSensor = gyroscopeSensor != null ? gyroscopeSensor : accelerometerSensor;
+        }else if(rotationVectorSensor != null){
+            publishingSensor = rotationVectorSensor;
+        }else{
             MainUiStateMachine.getInstance().toError();
             return;
         }
-        mSensorManager.registerListener(this, rotationVectorSensor, SENSOR_DELAY_MICROS);
+        synchronized (this) {
+            sensorThread = new HandlerThread("Sensors");
+            sensorThread.start();
+            sensorHandler = new Handler(sensorThread.getLooper());
+            // runs before the first event, which is delivered to the same handler
+            sensorHandler.post(resetTask);
+            registered = true;
+            register(samplingProfile);
+        }
+        MainUiStateMachine.getInstance().addStateListener(this);
     }
 
     /**
      * Stops listening to sensors
      */
     public void stopListening() {
-        mSensorManager.unregisterListener(this);
+        MainUiStateMachine.getInstance().removeListener(this);
+        HandlerThread thread;
+        synchronized (this) {
+            registered = false;
+            mSensorManager.unregisterListener(this);
+            thread = sensorThread;
+            sensorThread = null;
+            sensorHandler = null;
+        }
         orientationListener = null;
+        if(thread != null){
+            thread.quitSafely();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // sensor thread, a new start forgets everything learned from the previous sensors
+    private void resetSensorState() {
+        processor.reset();
+        gravityFilter.reset();
+        lastEventNanos = 0;
+        mLastAccuracy = SensorManager.SENSOR_STATUS_ACCURACY_HIGH;
+        anglePosted = false;
+    }
+
+    private void register(SamplingProfile profile) {
+        if(fusion){
+            register(accelerometerSensor, profile);
+            if(gyroscopeSensor != null){
+                register(gyroscopeSensor, profile);
+            }
+        }else{
+            register(rotationVectorSensor, profile);
+        }
+    }
+
+    private void register(Sensor sensor, SamplingProfile profile) {
+        mSensorManager.registerListener(this, sensor,
+                profile.samplingPeriodUs, profile.maxReportLatencyUs, sensorHandler);
+    }
+
+    // needs every transition to pick the rate, not just the latest state of a frame
+    @Override
+    public boolean isLossless() {
+        return true;
+    }
+
+    @Override
+    public void onStateChanged(MainLogicState state) {
+        SamplingProfile profile = SamplingProfile.forState(state);
+        synchronized (this) {
+            if(profile == samplingProfile){
+                return;
+            }
+            samplingProfile = profile;
+            if(registered){
+                // orientationListener is kept, only the sensor registration is swapped
+                mSensorManager.unregisterListener(this);
+                register(profile);
+            }
+        }
     }
 
     @Override
     public void onAccuracyChanged(Sensor sensor, int accuracy) {
-        if (mLastAccuracy != accuracy) {
+        // only the sensor the orientation is based on, an uncalibrated gyroscope is corrected by the filter anyway
+        Sensor primary = fusion ? accelerometerSensor : rotationVectorSensor;
+        if (sensor == primary && mLastAccuracy != accuracy) {
             mLastAccuracy = accuracy;
         }
     }
 
     @Override
     public void onSensorChanged(SensorEvent event) {
-        if (orientationListener == null) {
+        RotationOrientationListener listener = orientationListener;
+        if (listener == null) {
             return;
         }
         if (mLastAccuracy == SensorManager.SENSOR_STATUS_UNRELIABLE) {
             return;
         }
-        if (event.sensor == rotationVectorSensor) {
-            processEvent(event.values);
+        if(fusion){
+            if(event.sensor == accelerometerSensor){
+                gravityFilter.onAccelerometer(event.values[0], event.values[1], event.values[2], event.timestamp);
+            }else if(event.sensor == gyroscopeSensor){
+                gravityFilter.onGyroscope(event.values[0], event.values[1], event.values[2], event.timestamp);
+            }
+        }
+        if (event.sensor == publishingSensor) {
+            sensorEvents.increment();
+            if(lastEventNanos != 0){
+                sensorIntervals.record((event.timestamp - lastEventNanos) / 1_000_000);
+            }
+            lastEventNanos = event.timestamp;
+            LatencyTracer.beginSection("Sensors.process");
+            if(!fusion){
+                processEvent(listener, event.values, event.timestamp);
+            }else if(gravityFilter.hasEstimate()){
+                processFused(listener, event.timestamp);
+            }
+            LatencyTracer.endSection();
         }
     }
 
-    // this part was largely taken from an example
-    private void processEvent(float[] rotationVector) {
-        float[] rotationMatrix = new float[9];
-        SensorManager.getRotationMatrixFromVector(rotationMatrix, rotationVector);
-
-        final int worldAxisForDeviceAxisX = SensorManager.AXIS_X;
-        final int worldAxisForDeviceAxisY = SensorManager.AXIS_Z;
-
-        float[] adjustedRotationMatrix = new float[9];
-        SensorManager.remapCoordinateSystem(rotationMatrix, worldAxisForDeviceAxisX,
-                worldAxisForDeviceAxisY, adjustedRotationMatrix);
+    // closed-form equivalent of rotation matrix -> remap(AXIS_X, AXIS_Z) -> getOrientation, see OrientationMath
+    private void processEvent(RotationOrientationListener listener, float[] rotationVector, long timestampNanos) {
+        boolean good = processor.process(rotationVector, timestampNanos);
+        TelemetryLog log = TelemetrySession.getInstance().getLog();
+        if(log != null){
+            // the raw sample makes the session replayable, see ReplayDriver
+            log.appendRotationVector(timestampNanos, rotationVector);
+        }
+        publish(listener, good, timestampNanos);
+    }
 
-        // Transform rotation matrix into azimuth/pitch/roll
-        float[] orientation = new float[3];
-        SensorManager.getOrientation(adjustedRotationMatrix, orientation);
+    // same outputs as the rotation vector path, only the up vector comes from the GravityFilter;
+    // without raw samples in the log, ReplayDriver replays the recorded angle decisions
+    private void processFused(RotationOrientationListener listener, long timestampNanos) {
+        boolean good = processor.processUpVector(gravityFilter.getUpX(), gravityFilter.getUpY(),
+                gravityFilter.getUpZ(), timestampNanos);
+        publish(listener, good, timestampNanos);
+    }
 
-        float pitch = (float) Math.toDegrees(orientation[1]) * -1;
-        float roll = (float) Math.toDegrees(orientation[2]) * -1;
+    private void publish(RotationOrientationListener listener, boolean good, long timestampNanos) {
+        float pitch = processor.getPitch();
+        float roll = processor.getRoll();
 
-        orientationListener.onOrientationChanged(pitch, roll);
+        listener.onOrientationChanged(pitch, roll, timestampNanos);
 
-        if(Math.abs(pitch) < SensorConstants.PITCH_TOLERANCE_DEG && Math.abs(roll) < SensorConstants.ROLL_TOLERANCE_DEG){
-            MainUiStateMachine.getInstance().toGoodAngle();
-        }else{
-            MainUiStateMachine.getInstance().toBadAngle();
+        TelemetryLog log = TelemetrySession.getInstance().getLog();
+        if(log != null){
+            log.appendOrientation(timestampNanos, pitch, roll, good);
+        }
+        if(!anglePosted || good != postedGood){
+            anglePosted = true;
+            postedGood = good;
+            if(good){
+                MainUiStateMachine.getInstance().toGoodAngle();
+            }else{
+                MainUiStateMachine.getInstance().toBadAngle();
+            }
         }
+        LatencyTracer.getInstance().record(LatencyTracer.Stage.SENSOR_TO_ORIENTATION, timestampNanos);
     }
 }
\ No newline at end of file
@@ -1,9 +0,0 @@
-package com.panda.a6o6test.sensors;
-
-public class SensorConstants {
-
-    public static final int PITCH_TOLERANCE_DEG = 20;
-    public static final int ROLL_TOLERANCE_DEG = 20;
-    public static final int UPRIGHT_STABLE_TIME_MILLIS = 3000;
-
-}
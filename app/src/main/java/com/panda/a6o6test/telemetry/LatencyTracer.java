@@ -0,0 +1,116 @@
+package com.panda.a6o6test.telemetry;
+
+import android.os.SystemClock;
+import android.os.Trace;
+
+import java.util.Locale;
+
+/**
+ * Per-stage latencies of the HUD pipeline, from a sensor event or a camera capture to the HUD draw.
+ * All timestamps are in the {@link SystemClock#elapsedRealtimeNanos()} time base, which sensor events use;
+ * camera timestamps are converted with {@link #fromCameraTimestamp(long, boolean)}.
+ * The stages also show up as sections in a system trace.
+ */
+public class LatencyTracer {
+
+    /**
+     * Measured stages, each from the origin of a sample to the point it passed
+     */
+    public enum Stage {
+        /** SensorEvent timestamp until pitch and roll are computed and published */
+        SENSOR_TO_ORIENTATION,
+        /** SensorEvent timestamp until the HUD is drawn with it */
+        SENSOR_TO_DRAW,
+        /** SENSOR_TIMESTAMP of a capture until its result reaches the camera thread */
+        CAPTURE_TO_RESULT,
+        /** SENSOR_TIMESTAMP of a capture until its face box is drawn */
+        CAPTURE_TO_FACE_DRAW,
+        /** state machine event posted until it is applied on the state machine looper */
+        STATE_QUEUE
+    }
+
+    private static final LatencyTracer instance = new LatencyTracer();
+    private static final Stage[] STAGES = Stage.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+
+    private LatencyTracer(){
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public static LatencyTracer getInstance(){
+        return instance;
+    }
+
+    /**
+     * @return the time base of all traced timestamps
+     */
+    public static long now() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    /**
+     * @param timestampNanos SENSOR_TIMESTAMP or Image#getTimestamp()
+     * @param realtime whether SENSOR_INFO_TIMESTAMP_SOURCE is REALTIME, otherwise the timestamp is in the
+     *                 uptime base that {@link System#nanoTime()} uses
+     * @return the timestamp in the {@link #now()} time base
+     */
+    public static long fromCameraTimestamp(long timestampNanos, boolean realtime) {
+        return realtime ? timestampNanos : timestampNanos + (now() - System.nanoTime());
+    }
+
+    /**
+     * Records the time since the origin of a sample, from any thread
+     * @param originNanos in the {@link #now()} time base
+     */
+    public void record(Stage stage, long originNanos) {
+        if(TelemetryConstants.LATENCY_TRACING_ENABLED){
+            histograms[stage.ordinal()].recordNanos(now() - originNanos);
+        }
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * Starts a system trace section on the calling thread, close it with {@link #endSection()} on the same thread
+     */
+    public static void beginSection(String name) {
+        if(TelemetryConstants.LATENCY_TRACING_ENABLED){
+            Trace.beginSection(name);
+        }
+    }
+
+    public static void endSection() {
+        if(TelemetryConstants.LATENCY_TRACING_ENABLED){
+            Trace.endSection();
+        }
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * @return p50 and p99 of a stage in milliseconds, for the debug overlay
+     */
+    public String describe(Stage stage) {
+        LatencyHistogram histogram = histograms[stage.ordinal()];
+        return String.format(Locale.US, "%s p50 %.1f p99 %.1f ms (%d)", stage,
+                histogram.percentileMicros(0.5) / 1000f, histogram.percentileMicros(0.99) / 1000f, histogram.getCount());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Latencies:");
+        for (Stage stage : STAGES) {
+            builder.append('\n').append(describe(stage));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,175 @@
+package com.panda.a6o6test.telemetry;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Owns the {@link TelemetryLog} of the current camera session.
+ * Producers fetch {@link #getLog()} and append directly from their own threads, a null log means telemetry is off.
+ * Creating, forcing and closing the file all happen on a dedicated thread, so neither producers nor the
+ * main thread ever block on storage.
+ */
+public class TelemetrySession {
+
+    private static final String TAG = "TelemetrySession";
+    private static final String EXTENSION = ".tlog";
+    private static final TelemetrySession instance = new TelemetrySession();
+
+    // set once a session file is open, cleared only by the session that opened it
+    private final AtomicReference<TelemetryLog> log = new AtomicReference<>();
+
+    // guarded by this, start and stop come from the main thread
+    private HandlerThread thread;
+    private Session session;
+
+    private TelemetrySession(){}
+
+    public static TelemetrySession getInstance(){
+        return instance;
+    }
+
+    /**
+     * Starts a new session file in the given directory, deleting the oldest files beyond
+     * {@link TelemetryConstants#TELEMETRY_MAX_FILES}. The file is created asynchronously,
+     * {@link #getLog()} stays null until it is ready.
+     * @param filesDir app private directory, e.g. Context#getFilesDir()
+     */
+    public synchronized void start(File filesDir) {
+        if(!TelemetryConstants.TELEMETRY_ENABLED || thread != null){
+            return;
+        }
+        thread = new HandlerThread("Telemetry");
+        thread.start();
+        Session started = new Session(new Handler(thread.getLooper()));
+        session = started;
+        started.handler.post(() -> started.open(filesDir));
+    }
+
+    /**
+     * Forces and closes the session file, asynchronously after anything still pending for it
+     */
+    public synchronized void stop() {
+        if(thread == null){
+            return;
+        }
+        Session stopped = session;
+        stopped.handler.post(stopped::close);
+        // the close above is already due, only later force runs are dropped
+        thread.quitSafely();
+        thread = null;
+        session = null;
+    }
+
+    /**
+     * @return log of the running session, null when there is none
+     */
+    @Nullable
+    public TelemetryLog getLog() {
+        return log.get();
+    }
+
+    /**
+     * @return timestamp base of all records not carrying a sensor timestamp
+     */
+    public static long now() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    // file names start with the creation time, so name order is age order
+    private static void pruneOldFiles(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if(files == null || files.length < TelemetryConstants.TELEMETRY_MAX_FILES){
+            return;
+        }
+        Arrays.sort(files);
+        for (int i = 0; i <= files.length - TelemetryConstants.TELEMETRY_MAX_FILES; i++) {
+            if(!files[i].delete()){
+                Log.w(TAG, "Cannot delete " + files[i]);
+            }
+        }
+    }
+
+    // one started session, its file is created, forced and closed on its own thread
+    private final class Session {
+
+        private final Handler handler;
+        // confined to the session thread
+        private TelemetryLog sessionLog;
+
+        private final Runnable forceTask = new Runnable() {
+            @Override
+            public void run() {
+                sessionLog.force();
+                handler.postDelayed(this, TelemetryConstants.TELEMETRY_FORCE_INTERVAL_MILLIS);
+            }
+        };
+
+        Session(Handler handler) {
+            this.handler = handler;
+        }
+
+        void open(File filesDir) {
+            if(!isCurrent()){
+                // stopped before its thread got to it
+                return;
+            }
+            File directory = new File(filesDir, TelemetryConstants.TELEMETRY_DIRECTORY);
+            if(!directory.isDirectory() && !directory.mkdirs()){
+                Log.w(TAG, "Cannot create " + directory);
+                return;
+            }
+            pruneOldFiles(directory);
+            File file = new File(directory, String.format(Locale.US, "session_%d%s", System.currentTimeMillis(), EXTENSION));
+            try {
+                sessionLog = TelemetryLog.create(file, TelemetryConstants.TELEMETRY_CAPACITY_RECORDS);
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot create " + file, e);
+                return;
+            }
+            boolean published = false;
+            synchronized (TelemetrySession.this) {
+                // a quick pause and resume may have started a newer session meanwhile, whose log must stay
+                if(session == this){
+                    log.set(sessionLog);
+                    published = true;
+                }
+            }
+            if(!published){
+                close();
+                return;
+            }
+            handler.postDelayed(forceTask, TelemetryConstants.TELEMETRY_FORCE_INTERVAL_MILLIS);
+        }
+
+        private boolean isCurrent() {
+            synchronized (TelemetrySession.this) {
+                return session == this;
+            }
+        }
+
+        void close() {
+            handler.removeCallbacks(forceTask);
+            if(sessionLog == null){
+                return;
+            }
+            // a newer session may already have published its own log
+            log.compareAndSet(sessionLog, null);
+            try {
+                sessionLog.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot close session", e);
+            }
+            sessionLog = null;
+        }
+    }
+}
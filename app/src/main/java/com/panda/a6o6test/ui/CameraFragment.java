@@ -1,9 +1,14 @@
 package com.panda.a6o6test.ui;
 
+import android.content.Context;
+import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -19,9 +24,14 @@ import com.panda.a6o6test.logic.MainUiStateMachine;
 import com.panda.a6o6test.permissions.CameraPermissionCallback;
 import com.panda.a6o6test.permissions.PermissionUtility;
 import com.panda.a6o6test.sensors.OrientationManager;
+import com.panda.a6o6test.sensors.SensorConstants;
+import com.panda.a6o6test.telemetry.TelemetrySession;
 
 public class CameraFragment extends Fragment implements CameraPermissionCallback{
 
+    private static final String PREFERENCES = "camera";
+    private static final String KEY_LOW_COST_ORIENTATION = "low_cost_orientation";
+
     private CameraSurfaceView surfaceView;
     private ActivityResultLauncher<String> activityResultLauncher;
     private Handler cameraHandler;
@@ -33,6 +43,7 @@ public class CameraFragment extends Fragment implements CameraPermissionCallback
     public void onCreate(@Nullable Bundle savedInstanceState) {
         activityResultLauncher = PermissionUtility.registerForCameraPermission(this, this);
         super.onCreate(savedInstanceState);
+        setHasOptionsMenu(true);
     }
 
     @Nullable
@@ -52,14 +63,19 @@ public class CameraFragment extends Fragment implements CameraPermissionCallback
     @Override
     public void onResume() {
         super.onResume();
+        if(getContext() != null){
+            TelemetrySession.getInstance().start(getContext().getFilesDir());
+        }
         MainUiStateMachine.getInstance().onResume();
         startBgThread();
         if(PermissionUtility.checkCameraPermission(getContext())) {
-            surfaceView.post(() -> startCamera(cameraHandler));
+            // no need to wait for layout, the session is created once the surface exists
+            startCamera(cameraHandler);
         }else if(!triedGettingPermission){
             PermissionUtility.requestCameraPermission(activityResultLauncher);
             triedGettingPermission = true;
         }
+        orientationManager.setLowCostMode(isLowCostOrientation());
         orientationManager.startListening(surfaceView);
     }
 
@@ -69,9 +85,37 @@ public class CameraFragment extends Fragment implements CameraPermissionCallback
         stopCamera();
         orientationManager.stopListening();
         stopBgThread();
+        TelemetrySession.getInstance().stop();
         super.onPause();
     }
 
+    @Override
+    public void onCreateOptionsMenu(@NonNull Menu menu, @NonNull MenuInflater inflater) {
+        inflater.inflate(R.menu.camera_menu, menu);
+        menu.findItem(R.id.low_cost_orientation).setChecked(isLowCostOrientation());
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if(item.getItemId() == R.id.low_cost_orientation){
+            boolean lowCost = !item.isChecked();
+            item.setChecked(lowCost);
+            getPreferences().edit().putBoolean(KEY_LOW_COST_ORIENTATION, lowCost).apply();
+            orientationManager.setLowCostMode(lowCost);
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    // fuses accelerometer and gyroscope instead of the rotation vector sensor, see OrientationManager
+    private boolean isLowCostOrientation(){
+        return getPreferences().getBoolean(KEY_LOW_COST_ORIENTATION, SensorConstants.LOW_COST_ORIENTATION);
+    }
+
+    private SharedPreferences getPreferences(){
+        return requireContext().getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+
     private void startCamera(Handler handler){
         CameraLogic.getInstance().startCamera(this.getContext(), surfaceView, handler);
     }
@@ -4,9 +4,17 @@ import android.content.res.Configuration;
 import android.os.Bundle;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.panda.a6o6test.R;
+import com.panda.a6o6test.analysis.AnalyzerStats;
+import com.panda.a6o6test.camera.CameraLogic;
+import com.panda.a6o6test.telemetry.LatencyTracer;
+import com.panda.a6o6test.telemetry.MetricsRegistry;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -28,4 +36,22 @@ public class MainActivity extends AppCompatActivity {
         //do nothing, app is in portrait in current version
     }
 
+    // adb shell dumpsys activity com.panda.a6o6test/.ui.MainActivity
+    @Override
+    public void dump(@NonNull String prefix, @Nullable FileDescriptor fd, @NonNull PrintWriter writer, @Nullable String[] args) {
+        super.dump(prefix, fd, writer, args);
+        MetricsRegistry.getInstance().dump(writer, prefix);
+        for (LatencyTracer.Stage stage : LatencyTracer.Stage.values()) {
+            writer.print(prefix);
+            writer.print("  latency ");
+            writer.println(LatencyTracer.getInstance().describe(stage));
+        }
+        // analyzers come and go with the camera, so they are listed here instead of as gauges
+        for (AnalyzerStats stats : CameraLogic.getInstance().getAnalysisPipeline().getStats()) {
+            writer.print(prefix);
+            writer.print("  analyzer ");
+            writer.println(stats);
+        }
+    }
+
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
 import com.panda.a6o6test.R;
+import com.panda.a6o6test.logic.MainLogicState;
 import com.panda.a6o6test.logic.MainStateListener;
 import com.panda.a6o6test.logic.MainUiStateMachine;
 
@@ -22,6 +23,7 @@ import com.panda.a6o6test.logic.MainUiStateMachine;
 public class PanelFragment extends Fragment implements MainStateListener {
 
     private ViewFlipper viewFlipper;
+    private int[] childIndexByState;
 
     @Nullable
     @Override
@@ -34,6 +36,7 @@ public class PanelFragment extends Fragment implements MainStateListener {
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         viewFlipper = view.findViewById(R.id.panel_flipper);
+        childIndexByState = StateViewMap.resolveChildIndices(viewFlipper);
         view.findViewById(R.id.next_button).setOnClickListener(v -> MainUiStateMachine.getInstance().toNoFaceFromButton());
         view.findViewById(R.id.to_test_button).setOnClickListener(v -> MainUiStateMachine.getInstance().toTest());
     }
@@ -50,10 +53,12 @@ public class PanelFragment extends Fragment implements MainStateListener {
         MainUiStateMachine.getInstance().removeListener(this);
     }
 
+    // delivered on the main thread, at most once per frame
     @Override
-    public void onStateChanged(MainUiStateMachine.MainLogicState state) {
-        if(getActivity() != null) {
-            getActivity().runOnUiThread(() -> viewFlipper.setDisplayedChild(viewFlipper.indexOfChild(viewFlipper.findViewById(StateViewMap.getIdForState(state)))));
+    public void onStateChanged(MainLogicState state) {
+        int index = childIndexByState[state.ordinal()];
+        if(index >= 0 && viewFlipper.getDisplayedChild() != index) {
+            viewFlipper.setDisplayedChild(index);
         }
     }
 
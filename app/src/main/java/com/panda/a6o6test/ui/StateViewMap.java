@@ -1,47 +1,59 @@
 package com.panda.a6o6test.ui;
 
-import static com.panda.a6o6test.logic.MainUiStateMachine.MainLogicState.ALL_GO;
-import static com.panda.a6o6test.logic.MainUiStateMachine.MainLogicState.BAD_ANGLE;
-import static com.panda.a6o6test.logic.MainUiStateMachine.MainLogicState.ERROR;
-import static com.panda.a6o6test.logic.MainUiStateMachine.MainLogicState.CONFIRMED_ANGLE;
-import static com.panda.a6o6test.logic.MainUiStateMachine.MainLogicState.NO_FACE;
-import static com.panda.a6o6test.logic.MainUiStateMachine.MainLogicState.NO_PERMISSION;
-import static com.panda.a6o6test.logic.MainUiStateMachine.MainLogicState.TEST;
-import static com.panda.a6o6test.logic.MainUiStateMachine.MainLogicState.WAITING_ANGLE;
+import static com.panda.a6o6test.logic.MainLogicState.ALL_GO;
+import static com.panda.a6o6test.logic.MainLogicState.BAD_ANGLE;
+import static com.panda.a6o6test.logic.MainLogicState.ERROR;
+import static com.panda.a6o6test.logic.MainLogicState.CONFIRMED_ANGLE;
+import static com.panda.a6o6test.logic.MainLogicState.NO_FACE;
+import static com.panda.a6o6test.logic.MainLogicState.NO_PERMISSION;
+import static com.panda.a6o6test.logic.MainLogicState.TEST;
+import static com.panda.a6o6test.logic.MainLogicState.WAITING_ANGLE;
+
+import android.view.ViewGroup;
 
 import com.panda.a6o6test.R;
-import com.panda.a6o6test.logic.MainUiStateMachine;
+import com.panda.a6o6test.logic.MainLogicState;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
- * A utility to map UI views to UI states
+ * A utility to map UI views to UI states.
+ * Backed by plain int tables indexed by state ordinal to avoid boxing and map lookups.
  */
 public class StateViewMap {
 
-    private static final Map<MainUiStateMachine.MainLogicState, Integer> map = new HashMap<>();
+    private static final int[] ids = new int[MainLogicState.values().length];
 
     static {
-        map.put(TEST, R.id.testing_view);
-        map.put(NO_FACE, R.id.no_face_view);
-        map.put(NO_PERMISSION, R.id.no_permission_view);
-        map.put(ALL_GO, R.id.all_go_view);
-        map.put(CONFIRMED_ANGLE, R.id.good_angle_view);
-        map.put(WAITING_ANGLE, R.id.waiting_upright_view);
-        map.put(BAD_ANGLE, R.id.not_upright_view);
-        map.put(ERROR, R.id.error_view);
+        Arrays.fill(ids, R.id.error_view);
+        ids[TEST.ordinal()] = R.id.testing_view;
+        ids[NO_FACE.ordinal()] = R.id.no_face_view;
+        ids[NO_PERMISSION.ordinal()] = R.id.no_permission_view;
+        ids[ALL_GO.ordinal()] = R.id.all_go_view;
+        ids[CONFIRMED_ANGLE.ordinal()] = R.id.good_angle_view;
+        ids[WAITING_ANGLE.ordinal()] = R.id.waiting_upright_view;
+        ids[BAD_ANGLE.ordinal()] = R.id.not_upright_view;
+        ids[ERROR.ordinal()] = R.id.error_view;
     }
 
     /**
      * @param state
      * @return UI view id for given UI state
      */
-    public static int getIdForState(MainUiStateMachine.MainLogicState state){
-        Integer result = map.get(state);
-        if(result == null){
-            result = R.id.error_view;
+    public static int getIdForState(MainLogicState state){
+        return ids[state.ordinal()];
+    }
+
+    /**
+     * Resolves the child index of every state's view once, so switching needs no view tree search
+     * @param parent direct parent of the state views
+     * @return child indices indexed by state ordinal, -1 where the view is missing
+     */
+    public static int[] resolveChildIndices(ViewGroup parent){
+        int[] indices = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            indices[i] = parent.indexOfChild(parent.findViewById(ids[i]));
         }
-        return result;
+        return indices;
     }
 }
@@ -0,0 +1,84 @@
+package com.panda.a6o6test.analysis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame cost of the analyzers on the analysis thread, measured on recorded frames
+ * from src/jmh/resources/frames, or on a synthetic texture for sizes without one
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FrameQualityBenchmark {
+
+    private static final String FIXTURES = "/frames/";
+
+    @Param({"640x480", "1280x960"})
+    public String size;
+
+    private int width, height;
+    private ByteBuffer luma;
+    private final FrameQualityAnalyzer qualityAnalyzer = new FrameQualityAnalyzer(good -> { });
+    private int[] downscaled;
+    private LumaFaceDetector faceDetector;
+    private final int[] bounds = new int[4];
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] parts = size.split("x");
+        width = Integer.parseInt(parts[0]);
+        height = Integer.parseInt(parts[1]);
+        // a Y plane dumped by FrameDumpAnalyzer, renamed to its size
+        String fixture = FIXTURES + size + FrameDumpAnalyzer.EXTENSION;
+        try (InputStream in = FrameQualityBenchmark.class.getResourceAsStream(fixture)) {
+            luma = in != null ? FrameDumpAnalyzer.readLuma(in, width, height) : syntheticLuma(width, height);
+        }
+        downscaled = new int[60 * 80];
+        // each benchmark runs in a fresh fork, detectFace needs the image without downscaleForFaces running first
+        LumaDownscaler.downscale(luma, width, 1, width, height, 270, downscaled, 60, 80);
+        faceDetector = new LumaFaceDetector(60, 80, 16);
+    }
+
+    // stand-in until a recorded frame of that size is added, direct like the camera's plane buffers and
+    // textured so sharpness has edges to find
+    private static ByteBuffer syntheticLuma(int width, int height) {
+        ByteBuffer luma = ByteBuffer.allocateDirect(width * height);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value = 96 + ((x / 8 + y / 8) % 2) * 64 + random.nextInt(16);
+                luma.put(y * width + x, (byte) value);
+            }
+        }
+        return luma;
+    }
+
+    @Benchmark
+    public boolean measureQuality() {
+        return qualityAnalyzer.measure(luma, width, 1, width, height);
+    }
+
+    @Benchmark
+    public int[] downscaleForFaces() {
+        LumaDownscaler.downscale(luma, width, 1, width, height, 270, downscaled, 60, 80);
+        return downscaled;
+    }
+
+    @Benchmark
+    public boolean detectFace() {
+        return faceDetector.detect(downscaled, bounds);
+    }
+}
@@ -0,0 +1,76 @@
+package com.panda.a6o6test.camera;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Face result path from the camera thread to the HUD: presence tracking, the slot hand-off and the view mapping
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FaceMappingBenchmark {
+
+    @State(Scope.Thread)
+    public static class Mapping {
+        final SensorToViewTransform transform = new SensorToViewTransform();
+        final FacePresenceTracker tracker = new FacePresenceTracker();
+        final float[] mapped = new float[4];
+        final int[] smoothed = new int[4];
+        int frame;
+
+        @Setup
+        public void setUp() {
+            transform.setSensorGeometry(4032, 3024, 270, true);
+            transform.setViewSize(1080, 2160);
+        }
+    }
+
+    @State(Scope.Group)
+    public static class Slot {
+        final FaceResultSlot slot = new FaceResultSlot();
+        int written;
+    }
+
+    @Benchmark
+    public float[] mapRect(Mapping state) {
+        int shift = state.frame++ & 63;
+        state.transform.mapRect(1500 + shift, 1000, 2500 + shift, 2200, state.mapped);
+        return state.mapped;
+    }
+
+    // every 16th result misses the face, as detectors do
+    @Benchmark
+    public int trackAndSmooth(Mapping state) {
+        int frame = state.frame++;
+        int shift = frame & 31;
+        int edge = state.tracker.update((frame & 15) != 0, 1500 + shift, 1000, 2500 + shift, 2200);
+        state.tracker.getSmoothedBounds(state.smoothed);
+        return edge;
+    }
+
+    @Benchmark
+    @Group("slot")
+    @GroupThreads(1)
+    public void publish(Slot state) {
+        FaceResultSlot.FaceSample sample = state.slot.beginWrite();
+        sample.present = true;
+        sample.left = state.written++;
+        state.slot.publish();
+    }
+
+    @Benchmark
+    @Group("slot")
+    @GroupThreads(1)
+    public int latest(Slot state) {
+        return state.slot.latest().left;
+    }
+}
@@ -0,0 +1,78 @@
+package com.panda.a6o6test.logic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transition throughput of {@link StateMachineCore} and producer contention on {@link StateEventQueue}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StateMachineBenchmark {
+
+    // a full session: permission, angle wobble, face found and lost under changing quality, test
+    private static final StateEvent[] SESSION = {
+            StateEvent.RESUME, StateEvent.IDLE, StateEvent.BAD_ANGLE, StateEvent.GOOD_ANGLE, StateEvent.BAD_ANGLE,
+            StateEvent.GOOD_ANGLE, StateEvent.CONFIRM_ANGLE, StateEvent.NO_FACE_FROM_BUTTON, StateEvent.QUALITY_BAD,
+            StateEvent.ALL_GO, StateEvent.QUALITY_OK, StateEvent.NO_FACE_FROM_DETECTION, StateEvent.ALL_GO,
+            StateEvent.TEST, StateEvent.ERROR, StateEvent.PAUSE
+    };
+
+    @State(Scope.Thread)
+    public static class CoreState {
+        StateMachineCore core;
+        int transitions;
+        int next;
+
+        @Setup
+        public void setUp() {
+            StateMachineCore.Timer timer = new StateMachineCore.Timer() {
+                @Override
+                public void schedule(long delayMillis) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            };
+            core = new StateMachineCore(TransitionTable.getDefault(), timer, (from, to, event) -> transitions++);
+        }
+    }
+
+    @State(Scope.Group)
+    public static class QueueState {
+        final StateEventQueue queue = new StateEventQueue(256);
+    }
+
+    @Benchmark
+    public MainLogicState applyEvent(CoreState state) {
+        StateEvent event = SESSION[state.next];
+        state.next = (state.next + 1) % SESSION.length;
+        state.core.apply(event);
+        return state.core.getState();
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(3)
+    public boolean offer(QueueState state) {
+        return state.queue.offer(StateEvent.GOOD_ANGLE.ordinal(), System.nanoTime());
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(1)
+    public int drain(QueueState state, Blackhole blackhole) {
+        return state.queue.drain((event, stamp) -> blackhole.consume(stamp), 64);
+    }
+}
@@ -0,0 +1,61 @@
+package com.panda.a6o6test.sensors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one rotation vector sample on the sensor thread
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OrientationBenchmark {
+
+    private static final int SAMPLES = 1024;
+
+    private final float[][] rotationVectors = new float[SAMPLES][];
+    private final OrientationProcessor processor = new OrientationProcessor();
+    private final float[] pitchRoll = new float[2];
+    private int next;
+    private long timestampNanos;
+
+    // device held roughly upright and wobbling across the angle tolerance
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < SAMPLES; i++) {
+            double pitch = Math.toRadians(90 + 30 * Math.sin(i * 0.01));
+            double roll = Math.toRadians(30 * Math.cos(i * 0.007));
+            rotationVectors[i] = fromEuler(pitch, roll);
+        }
+    }
+
+    @Benchmark
+    public boolean process() {
+        float[] rotationVector = rotationVectors[next];
+        next = (next + 1) & (SAMPLES - 1);
+        timestampNanos += 5_000_000;
+        return processor.process(rotationVector, timestampNanos);
+    }
+
+    @Benchmark
+    public float[] pitchRollOnly() {
+        float[] rotationVector = rotationVectors[next];
+        next = (next + 1) & (SAMPLES - 1);
+        OrientationMath.pitchRollFromRotationVector(rotationVector, pitchRoll);
+        return pitchRoll;
+    }
+
+    // x, y, z of the unit quaternion rotating about x by pitch, then about the device z axis by roll
+    private static float[] fromEuler(double pitch, double roll) {
+        double cx = Math.cos(pitch / 2), sx = Math.sin(pitch / 2);
+        double cz = Math.cos(roll / 2), sz = Math.sin(roll / 2);
+        return new float[]{(float) (sx * cz), (float) (-sx * sz), (float) (cx * sz)};
+    }
+}
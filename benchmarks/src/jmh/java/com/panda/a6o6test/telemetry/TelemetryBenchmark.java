@@ -0,0 +1,68 @@
+package com.panda.a6o6test.telemetry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording cost of telemetry, metrics and latency histograms with the app's three producer threads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(3)
+public class TelemetryBenchmark {
+
+    private File file;
+    private TelemetryLog log;
+    private final MetricsRegistry registry = new MetricsRegistry(System.nanoTime());
+    private MetricsRegistry.Counter counter;
+    private MetricsRegistry.Histogram histogram;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("telemetry", ".tlog");
+        log = TelemetryLog.create(file, TelemetryConstants.TELEMETRY_CAPACITY_RECORDS);
+        counter = registry.counter("events");
+        histogram = registry.histogram("intervals", 5, 10, 20, 40, 80, 160, 320);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        log.close();
+        if(!file.delete()){
+            file.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public void appendOrientation() {
+        log.appendOrientation(System.nanoTime(), 1.5f, -3f, true);
+    }
+
+    @Benchmark
+    public void incrementCounter() {
+        counter.increment();
+    }
+
+    @Benchmark
+    public void recordFixedHistogram() {
+        histogram.record(System.nanoTime() & 511);
+    }
+
+    @Benchmark
+    public void recordLatency() {
+        latencies.recordNanos(System.nanoTime() & 0xFFFFFF);
+    }
+}
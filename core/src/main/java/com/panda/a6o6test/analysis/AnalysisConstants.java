@@ -0,0 +1,25 @@
+package com.panda.a6o6test.analysis;
+
+public class AnalysisConstants {
+
+    // only every QUALITY_SAMPLE_STEP-th pixel of every QUALITY_SAMPLE_STEP-th row is looked at
+    public static final int QUALITY_SAMPLE_STEP = 4;
+    // acceptable mean luma, darker frames are underexposed and brighter ones washed out
+    public static final int QUALITY_MIN_MEAN_LUMA = 50;
+    public static final int QUALITY_MAX_MEAN_LUMA = 210;
+    // luma at or beyond these counts as clipped, typical of a backlit subject
+    public static final int QUALITY_CLIP_LOW = 8;
+    public static final int QUALITY_CLIP_HIGH = 247;
+    public static final float QUALITY_MAX_CLIPPED_RATIO = 0.2f;
+    // mean absolute neighbour difference relative to mean luma, lower means blurry
+    public static final float QUALITY_MIN_SHARPNESS = 0.02f;
+    // a changed verdict has to hold for this many consecutive frames before it is reported
+    public static final int QUALITY_CHANGE_FRAMES = 3;
+
+    // dump a few Y planes to the app's external files directory as benchmark fixtures, needs FRAME_ANALYSIS_ENABLED
+    public static final boolean FRAME_DUMP_ENABLED = false;
+    public static final String FRAME_DUMP_DIRECTORY = "frames";
+    public static final int FRAME_DUMP_INTERVAL_MILLIS = 2000;
+    public static final int FRAME_DUMP_MAX_FILES = 10;
+
+}
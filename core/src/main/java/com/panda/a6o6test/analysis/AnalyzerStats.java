@@ -0,0 +1,62 @@
+package com.panda.a6o6test.analysis;
+
+import java.util.Locale;
+
+/**
+ * Timing of a single analyzer. Written from the analysis thread, readable from any thread.
+ */
+public final class AnalyzerStats {
+
+    private final String name;
+    private volatile long frames;
+    private volatile long totalNanos;
+    private volatile long maxNanos;
+    private volatile long lastNanos;
+
+    public AnalyzerStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Called from the analysis thread only
+     * @param nanos time spent in one {@link FrameAnalyzer#analyze(YuvFrame)} call
+     */
+    public void record(long nanos) {
+        lastNanos = nanos;
+        totalNanos += nanos;
+        if(nanos > maxNanos){
+            maxNanos = nanos;
+        }
+        frames++;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getLastNanos() {
+        return lastNanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @return mean time per frame, 0 before the first frame
+     */
+    public long getAverageNanos() {
+        long count = frames;
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s: frames=%d avg=%.2fms max=%.2fms",
+                name, getFrames(), getAverageNanos() / 1e6, getMaxNanos() / 1e6);
+    }
+}
@@ -0,0 +1,26 @@
+package com.panda.a6o6test.analysis;
+
+/**
+ * Looks at camera frames on the analysis thread.
+ * The frame and its buffers are only valid for the duration of the call and must not be kept.
+ */
+public interface FrameAnalyzer {
+
+    /**
+     * @param frame current frame, read with absolute ByteBuffer gets so positions stay untouched
+     */
+    void analyze(YuvFrame frame);
+
+    /**
+     * Called on the analysis thread when a stream starts, before its first frame, for the analyzers registered by then
+     */
+    default void onStart(){
+    }
+
+    /**
+     * @return name used in timing stats
+     */
+    default String getName(){
+        return getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,105 @@
+package com.panda.a6o6test.analysis;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Writes the Y plane of a camera frame to a file now and then, packed without row padding,
+ * so benchmarks and tests can run against real frames. Debugging aid, see {@link AnalysisConstants#FRAME_DUMP_ENABLED}.
+ */
+public class FrameDumpAnalyzer implements FrameAnalyzer {
+
+    public static final String EXTENSION = ".y";
+
+    private final File directory;
+    private final long intervalNanos;
+    private final int maxFiles;
+
+    // confined to the analysis thread
+    private byte[] row;
+    private long lastTimestampNanos;
+    private boolean dumpedAny;
+    private volatile int dumped;
+
+    /**
+     * @param directory where the files go, created on the first frame
+     * @param intervalMillis least sensor time between two dumped frames
+     * @param maxFiles frames to dump at most, then the analyzer does nothing
+     */
+    public FrameDumpAnalyzer(File directory, int intervalMillis, int maxFiles) {
+        this.directory = directory;
+        this.intervalNanos = intervalMillis * 1_000_000L;
+        this.maxFiles = maxFiles;
+    }
+
+    @Override
+    public void analyze(YuvFrame frame) {
+        if(dumped >= maxFiles){
+            return;
+        }
+        if(dumpedAny && frame.getTimestampNanos() - lastTimestampNanos < intervalNanos){
+            return;
+        }
+        dumpedAny = true;
+        lastTimestampNanos = frame.getTimestampNanos();
+        File file = new File(directory, String.format(Locale.US, "frame_%d_%dx%d%s",
+                frame.getTimestampNanos(), frame.getWidth(), frame.getHeight(), EXTENSION));
+        try {
+            write(frame, file);
+            dumped++;
+        } catch (IOException e) {
+            // nowhere to write, give up for this process
+            e.printStackTrace();
+            dumped = maxFiles;
+        }
+    }
+
+    // analysis thread
+    private void write(YuvFrame frame, File file) throws IOException {
+        if(!directory.isDirectory() && !directory.mkdirs()){
+            throw new IOException("Cannot create " + directory);
+        }
+        int width = frame.getWidth();
+        if(row == null || row.length != width){
+            row = new byte[width];
+        }
+        ByteBuffer y = frame.getBuffer(YuvFrame.Y);
+        int rowStride = frame.getRowStride(YuvFrame.Y);
+        int pixelStride = frame.getPixelStride(YuvFrame.Y);
+        try (OutputStream out = new FileOutputStream(file)) {
+            for (int r = 0; r < frame.getHeight(); r++) {
+                int offset = r * rowStride;
+                for (int c = 0; c < width; c++) {
+                    row[c] = y.get(offset + c * pixelStride);
+                }
+                out.write(row);
+            }
+        }
+    }
+
+    /**
+     * @return frames written so far
+     */
+    public int getDumped() {
+        return dumped;
+    }
+
+    /**
+     * Reads a dumped Y plane into a direct buffer, laid out like the camera's with row stride width and pixel stride 1
+     * @throws IOException if the stream holds fewer than width * height bytes
+     */
+    public static ByteBuffer readLuma(InputStream in, int width, int height) throws IOException {
+        byte[] bytes = new byte[width * height];
+        new DataInputStream(in).readFully(bytes);
+        ByteBuffer luma = ByteBuffer.allocateDirect(bytes.length);
+        luma.put(bytes);
+        luma.clear();
+        return luma;
+    }
+}
@@ -0,0 +1,180 @@
+package com.panda.a6o6test.analysis;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Judges whether a frame is good enough for a test: mean luma, the ratio of clipped pixels and
+ * a gradient based sharpness score, all taken from a strided subsample of the Y plane in one pass.
+ * Nothing is allocated per frame. A changed verdict is reported only after it held for a few frames.
+ */
+public class FrameQualityAnalyzer implements FrameAnalyzer {
+
+    /**
+     * Receives the verdict when it changes, on the analysis thread
+     */
+    public interface Listener {
+        void onQualityChanged(boolean good);
+    }
+
+    private final Listener listener;
+    private final int step;
+    private final int minMeanLuma, maxMeanLuma;
+    private final int clipLow, clipHigh;
+    private final float maxClippedRatio;
+    private final float minSharpness;
+    private final int changeFrames;
+
+    private volatile float meanLuma;
+    private volatile float clippedRatio;
+    private volatile float sharpness;
+    private volatile boolean good;
+
+    // confined to the analysis thread
+    private boolean hasVerdict;
+    private int disagreeingFrames;
+
+    /**
+     * Analyzer using {@link AnalysisConstants} thresholds
+     */
+    public FrameQualityAnalyzer(Listener listener) {
+        this(listener, AnalysisConstants.QUALITY_SAMPLE_STEP,
+                AnalysisConstants.QUALITY_MIN_MEAN_LUMA, AnalysisConstants.QUALITY_MAX_MEAN_LUMA,
+                AnalysisConstants.QUALITY_CLIP_LOW, AnalysisConstants.QUALITY_CLIP_HIGH,
+                AnalysisConstants.QUALITY_MAX_CLIPPED_RATIO, AnalysisConstants.QUALITY_MIN_SHARPNESS,
+                AnalysisConstants.QUALITY_CHANGE_FRAMES);
+    }
+
+    /**
+     * @param listener notified when the verdict changes, may be null
+     * @param step subsampling step in both directions
+     * @param minMeanLuma lowest acceptable mean luma
+     * @param maxMeanLuma highest acceptable mean luma
+     * @param clipLow luma at or below this counts as clipped
+     * @param clipHigh luma at or above this counts as clipped
+     * @param maxClippedRatio highest acceptable share of clipped samples
+     * @param minSharpness lowest acceptable mean absolute gradient relative to mean luma
+     * @param changeFrames consecutive frames a changed verdict has to hold
+     */
+    public FrameQualityAnalyzer(Listener listener, int step, int minMeanLuma, int maxMeanLuma, int clipLow, int clipHigh,
+                                float maxClippedRatio, float minSharpness, int changeFrames) {
+        if(step < 1 || changeFrames < 1){
+            throw new IllegalArgumentException("step and changeFrames must be positive");
+        }
+        this.listener = listener;
+        this.step = step;
+        this.minMeanLuma = minMeanLuma;
+        this.maxMeanLuma = maxMeanLuma;
+        this.clipLow = clipLow;
+        this.clipHigh = clipHigh;
+        this.maxClippedRatio = maxClippedRatio;
+        this.minSharpness = minSharpness;
+        this.changeFrames = changeFrames;
+    }
+
+    @Override
+    public void analyze(YuvFrame frame) {
+        boolean frameGood = measure(frame.getBuffer(YuvFrame.Y), frame.getRowStride(YuvFrame.Y),
+                frame.getPixelStride(YuvFrame.Y), frame.getWidth(), frame.getHeight());
+        if(!hasVerdict){
+            hasVerdict = true;
+            report(frameGood);
+            return;
+        }
+        if(frameGood == good){
+            disagreeingFrames = 0;
+            return;
+        }
+        if(++disagreeingFrames >= changeFrames){
+            disagreeingFrames = 0;
+            report(frameGood);
+        }
+    }
+
+    /**
+     * Measures a luma plane without touching the reported verdict, e.g. for recorded frames.
+     * Heap buffers wrapping a byte[] work just as well as direct ones.
+     * @return whether this frame alone passes all thresholds
+     */
+    public boolean measure(ByteBuffer y, int rowStride, int pixelStride, int width, int height) {
+        long sum = 0;
+        long gradientSum = 0;
+        int clipped = 0;
+        int samples = 0;
+        // the neighbour to the right and below is read for the gradient, so the last column and row are not sampled
+        for (int row = 0; row < height - 1; row += step) {
+            int rowOffset = row * rowStride;
+            for (int col = 0; col < width - 1; col += step) {
+                int offset = rowOffset + col * pixelStride;
+                int value = y.get(offset) & 0xFF;
+                int right = y.get(offset + pixelStride) & 0xFF;
+                int below = y.get(offset + rowStride) & 0xFF;
+                sum += value;
+                gradientSum += Math.abs(right - value) + Math.abs(below - value);
+                if(value <= clipLow || value >= clipHigh){
+                    clipped++;
+                }
+                samples++;
+            }
+        }
+        if(samples == 0){
+            meanLuma = 0;
+            clippedRatio = 0;
+            sharpness = 0;
+            return false;
+        }
+        float mean = (float) sum / samples;
+        meanLuma = mean;
+        clippedRatio = (float) clipped / samples;
+        sharpness = mean > 0 ? (float) gradientSum / (2f * samples * mean) : 0;
+        return mean >= minMeanLuma && mean <= maxMeanLuma
+                && clippedRatio <= maxClippedRatio && sharpness >= minSharpness;
+    }
+
+    @Override
+    public void onStart() {
+        reset();
+    }
+
+    /**
+     * Forgets the verdict, the next frame is reported right away
+     */
+    public void reset() {
+        hasVerdict = false;
+        disagreeingFrames = 0;
+    }
+
+    private void report(boolean good) {
+        this.good = good;
+        if(listener != null){
+            listener.onQualityChanged(good);
+        }
+    }
+
+    /**
+     * @return reported verdict
+     */
+    public boolean isGood() {
+        return good;
+    }
+
+    /**
+     * @return mean luma of the last measured frame
+     */
+    public float getMeanLuma() {
+        return meanLuma;
+    }
+
+    /**
+     * @return share of clipped samples in the last measured frame
+     */
+    public float getClippedRatio() {
+        return clippedRatio;
+    }
+
+    /**
+     * @return sharpness of the last measured frame
+     */
+    public float getSharpness() {
+        return sharpness;
+    }
+}
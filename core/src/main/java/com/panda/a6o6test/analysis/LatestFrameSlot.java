@@ -0,0 +1,61 @@
+package com.panda.a6o6test.analysis;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keep-latest hand-off between a producer and a consumer thread.
+ * Offering a frame while an older one is still waiting closes the older one, so a slow consumer
+ * makes the producer drop frames instead of holding on to buffers it needs.
+ * @param <T> frame type, closed when dropped
+ */
+public final class LatestFrameSlot<T extends AutoCloseable> {
+
+    private final AtomicReference<T> pending = new AtomicReference<>();
+    private volatile long dropped;
+
+    /**
+     * Called from the producer thread only.
+     * @return true if the frame replaced one that was never taken
+     */
+    public boolean offer(T frame) {
+        T previous = pending.getAndSet(frame);
+        if(previous == null){
+            return false;
+        }
+        dropped++;
+        closeQuietly(previous);
+        return true;
+    }
+
+    /**
+     * @return newest frame, now owned by the caller, or null if nothing new was offered
+     */
+    public T take() {
+        return pending.getAndSet(null);
+    }
+
+    /**
+     * Closes a frame still waiting, e.g. when the consumer is shutting down
+     */
+    public void clear() {
+        T previous = pending.getAndSet(null);
+        if(previous != null){
+            closeQuietly(previous);
+        }
+    }
+
+    /**
+     * @return frames closed without being taken
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    private static void closeQuietly(AutoCloseable frame) {
+        try {
+            frame.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
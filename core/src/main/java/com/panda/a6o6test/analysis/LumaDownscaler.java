@@ -0,0 +1,93 @@
+package com.panda.a6o6test.analysis;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Nearest-neighbour downscaling of a luma plane into a small upright image, and the inverse mapping of
+ * rectangles back into source coordinates. Rotation is applied while sampling, so there is no intermediate copy.
+ */
+public final class LumaDownscaler {
+
+    private LumaDownscaler(){}
+
+    /**
+     * @param src luma plane, read with absolute gets
+     * @param rowStride row stride of the plane
+     * @param pixelStride pixel stride of the plane
+     * @param srcWidth source width
+     * @param srcHeight source height
+     * @param rotation clockwise degrees the source has to be turned to be upright, multiple of 90
+     * @param out receives outWidth * outHeight luma values, row by row
+     * @param outWidth upright output width
+     * @param outHeight upright output height
+     */
+    public static void downscale(ByteBuffer src, int rowStride, int pixelStride, int srcWidth, int srcHeight,
+                                 int rotation, int[] out, int outWidth, int outHeight) {
+        int quarterTurns = ((rotation % 360 + 360) % 360) / 90;
+        for (int oy = 0; oy < outHeight; oy++) {
+            // normalized sample centers in 1/65536 units, keeps the inner loop in integer math
+            int v = (int) (((2L * oy + 1) << 16) / (2L * outHeight));
+            int rowOffset = oy * outWidth;
+            for (int ox = 0; ox < outWidth; ox++) {
+                int u = (int) (((2L * ox + 1) << 16) / (2L * outWidth));
+                int su, sv;
+                switch (quarterTurns){
+                    case 1:
+                        su = v;
+                        sv = 65536 - u;
+                        break;
+                    case 2:
+                        su = 65536 - u;
+                        sv = 65536 - v;
+                        break;
+                    case 3:
+                        su = 65536 - v;
+                        sv = u;
+                        break;
+                    default:
+                        su = u;
+                        sv = v;
+                        break;
+                }
+                int sx = Math.min((int) (((long) su * srcWidth) >> 16), srcWidth - 1);
+                int sy = Math.min((int) (((long) sv * srcHeight) >> 16), srcHeight - 1);
+                out[rowOffset + ox] = src.get(sy * rowStride + sx * pixelStride) & 0xFF;
+            }
+        }
+    }
+
+    /**
+     * Maps a rectangle of the upright output back into source coordinates scaled to targetWidth x targetHeight,
+     * e.g. the active pixel array the source stream covers.
+     * @param out receives left, top, right, bottom
+     */
+    public static void mapToSource(int left, int top, int right, int bottom, int outWidth, int outHeight,
+                                   int rotation, int targetWidth, int targetHeight, int[] out) {
+        int quarterTurns = ((rotation % 360 + 360) % 360) / 90;
+        float u0 = (float) left / outWidth, u1 = (float) right / outWidth;
+        float v0 = (float) top / outHeight, v1 = (float) bottom / outHeight;
+        float su0, su1, sv0, sv1;
+        switch (quarterTurns){
+            case 1:
+                su0 = v0; su1 = v1;
+                sv0 = 1 - u1; sv1 = 1 - u0;
+                break;
+            case 2:
+                su0 = 1 - u1; su1 = 1 - u0;
+                sv0 = 1 - v1; sv1 = 1 - v0;
+                break;
+            case 3:
+                su0 = 1 - v1; su1 = 1 - v0;
+                sv0 = u0; sv1 = u1;
+                break;
+            default:
+                su0 = u0; su1 = u1;
+                sv0 = v0; sv1 = v1;
+                break;
+        }
+        out[0] = Math.round(su0 * targetWidth);
+        out[1] = Math.round(sv0 * targetHeight);
+        out[2] = Math.round(su1 * targetWidth);
+        out[3] = Math.round(sv1 * targetHeight);
+    }
+}
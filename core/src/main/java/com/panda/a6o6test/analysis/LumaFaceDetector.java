@@ -0,0 +1,141 @@
+package com.panda.a6o6test.analysis;
+
+/**
+ * Small CPU face detector for devices whose camera reports no face statistics.
+ * Slides a square window over an upright luma image at several scales and scores Haar-like contrasts
+ * on an integral image: eye band darker than forehead and cheeks, nose bridge brighter than both eyes.
+ * Contrasts are normalized by the window's standard deviation, so the result does not depend on exposure.
+ * Meant for images of a few thousand pixels, all buffers are allocated once.
+ */
+public final class LumaFaceDetector {
+
+    // minimum window standard deviation, flat regions never look like a face
+    private static final float MIN_STDDEV = 6f;
+    // minimum normalized contrast of every feature
+    private static final float MIN_CONTRAST = 0.6f;
+    // minimum ratio between the weaker and the stronger eye contrast
+    private static final float MIN_EYE_SYMMETRY = 0.6f;
+    private static final float SCALE_STEP = 1.1f;
+
+    private final int width;
+    private final int height;
+    private final int minSize;
+    // (width + 1) x (height + 1), first row and column are zero
+    private final int[] integral;
+    private final int[] integralSquares;
+
+    private float lastScore;
+
+    /**
+     * @param width width of the images passed to {@link #detect(int[], int[])}
+     * @param height height of the images
+     * @param minSize smallest face size in pixels to look for
+     */
+    public LumaFaceDetector(int width, int height, int minSize) {
+        this.width = width;
+        this.height = height;
+        this.minSize = Math.max(minSize, 10);
+        integral = new int[(width + 1) * (height + 1)];
+        integralSquares = new int[(width + 1) * (height + 1)];
+    }
+
+    /**
+     * @param luma width * height values in 0..255, row by row
+     * @param outBounds receives left, top, right, bottom of the best face
+     * @return whether a face was found
+     */
+    public boolean detect(int[] luma, int[] outBounds) {
+        buildIntegral(luma);
+        float bestScore = 0;
+        int maxSize = Math.min(width, height);
+        for (float s = minSize; s <= maxSize; s *= SCALE_STEP) {
+            int size = (int) s;
+            int step = Math.max(1, size / 16);
+            for (int y = 0; y + size <= height; y += step) {
+                for (int x = 0; x + size <= width; x += step) {
+                    float score = score(x, y, size);
+                    if(score > bestScore){
+                        bestScore = score;
+                        outBounds[0] = x;
+                        outBounds[1] = y;
+                        outBounds[2] = x + size;
+                        outBounds[3] = y + size;
+                    }
+                }
+            }
+        }
+        lastScore = bestScore;
+        return bestScore > 0;
+    }
+
+    /**
+     * @return score of the face found by the last {@link #detect(int[], int[])}, 0 if none
+     */
+    public float getLastScore() {
+        return lastScore;
+    }
+
+    private void buildIntegral(int[] luma) {
+        int stride = width + 1;
+        for (int y = 0; y < height; y++) {
+            int rowSum = 0;
+            int rowSquares = 0;
+            int src = y * width;
+            int dst = (y + 1) * stride + 1;
+            for (int x = 0; x < width; x++) {
+                int value = luma[src + x];
+                rowSum += value;
+                rowSquares += value * value;
+                integral[dst + x] = integral[dst + x - stride] + rowSum;
+                integralSquares[dst + x] = integralSquares[dst + x - stride] + rowSquares;
+            }
+        }
+    }
+
+    // 0 if the window is rejected, otherwise the summed normalized contrast
+    private float score(int x, int y, int size) {
+        int area = size * size;
+        float mean = (float) sum(integral, x, y, x + size, y + size) / area;
+        float variance = (float) sum(integralSquares, x, y, x + size, y + size) / area - mean * mean;
+        if(variance < MIN_STDDEV * MIN_STDDEV){
+            return 0;
+        }
+
+        float stddev = (float) Math.sqrt(variance);
+        float forehead = mean(x, y, size, 30, 5, 70, 20);
+        float leftEye = mean(x, y, size, 15, 25, 40, 45);
+        float rightEye = mean(x, y, size, 60, 25, 85, 45);
+        float bridge = mean(x, y, size, 42, 25, 58, 45);
+        float leftCheek = mean(x, y, size, 15, 50, 40, 70);
+        float rightCheek = mean(x, y, size, 60, 50, 85, 70);
+
+        float foreheadDiff = forehead - Math.max(leftEye, rightEye);
+        float leftDiff = Math.min(bridge, leftCheek) - leftEye;
+        float rightDiff = Math.min(bridge, rightCheek) - rightEye;
+        // relative to the window's own spread, rejects texture and noise
+        float minContrast = MIN_CONTRAST * stddev;
+        if(foreheadDiff < minContrast || leftDiff < minContrast || rightDiff < minContrast){
+            return 0;
+        }
+        // both eyes should be about equally dark, a single dark blob is not a face
+        if(Math.min(leftDiff, rightDiff) < MIN_EYE_SYMMETRY * Math.max(leftDiff, rightDiff)){
+            return 0;
+        }
+        // ranked relative to brightness, windows hugging just part of a face have less contrast than the whole face
+        return (foreheadDiff + leftDiff + rightDiff) / mean;
+    }
+
+    // mean of a sub-rectangle given in percent of the window
+    private float mean(int x, int y, int size, int left, int top, int right, int bottom) {
+        int x0 = x + size * left / 100;
+        int y0 = y + size * top / 100;
+        int x1 = Math.max(x0 + 1, x + size * right / 100);
+        int y1 = Math.max(y0 + 1, y + size * bottom / 100);
+        return (float) sum(integral, x0, y0, x1, y1) / ((x1 - x0) * (y1 - y0));
+    }
+
+    private int sum(int[] table, int x0, int y0, int x1, int y1) {
+        int stride = width + 1;
+        return table[y1 * stride + x1] - table[y0 * stride + x1] - table[y1 * stride + x0] + table[y0 * stride + x0];
+    }
+}
@@ -0,0 +1,74 @@
+package com.panda.a6o6test.analysis;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A YUV_420_888 frame as seen by {@link FrameAnalyzer}s: the plane buffers of the camera image, not copies.
+ * One instance is reused for every frame.
+ */
+public final class YuvFrame {
+
+    public static final int Y = 0;
+    public static final int U = 1;
+    public static final int V = 2;
+
+    private final ByteBuffer[] buffers = new ByteBuffer[3];
+    private final int[] rowStrides = new int[3];
+    private final int[] pixelStrides = new int[3];
+    private int width, height;
+    private long timestampNanos;
+
+    /**
+     * Points the frame at new planes
+     */
+    public void set(int width, int height, long timestampNanos) {
+        this.width = width;
+        this.height = height;
+        this.timestampNanos = timestampNanos;
+    }
+
+    /**
+     * @param plane {@link #Y}, {@link #U} or {@link #V}
+     */
+    public void setPlane(int plane, ByteBuffer buffer, int rowStride, int pixelStride) {
+        buffers[plane] = buffer;
+        rowStrides[plane] = rowStride;
+        pixelStrides[plane] = pixelStride;
+    }
+
+    /**
+     * Drops the references to the planes once the image is closed
+     */
+    public void release() {
+        buffers[Y] = null;
+        buffers[U] = null;
+        buffers[V] = null;
+    }
+
+    public ByteBuffer getBuffer(int plane) {
+        return buffers[plane];
+    }
+
+    public int getRowStride(int plane) {
+        return rowStrides[plane];
+    }
+
+    public int getPixelStride(int plane) {
+        return pixelStrides[plane];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return sensor timestamp, same time base as capture results
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+}
@@ -0,0 +1,43 @@
+package com.panda.a6o6test.camera;
+
+public class CameraConstants {
+
+    // a face counts as present when detected in at least FACE_PRESENCE_VOTES of the last FACE_PRESENCE_WINDOW results
+    public static final int FACE_PRESENCE_WINDOW = 5;
+    public static final int FACE_PRESENCE_VOTES = 3;
+
+    // preview frame rate requested from auto exposure
+    public static final int TARGET_PREVIEW_FPS = 30;
+
+    // optional YUV stream for frame analyzers, sized in sensor orientation; also gates ALL_GO on frame quality.
+    // Skipped on LEGACY cameras unless software face detection needs the stream anyway, and dropped after recording
+    // when a session with it is rejected
+    public static final boolean FRAME_ANALYSIS_ENABLED = true;
+    public static final int ANALYSIS_MIN_WIDTH = 640;
+    public static final int ANALYSIS_MIN_HEIGHT = 480;
+
+    // CPU face detection, used when the camera offers no face statistics; size is the upright downscaled image
+    public static final int SOFTWARE_FACE_DETECTION_HZ = 5;
+    public static final int SOFTWARE_FACE_WIDTH = 60;
+    public static final int SOFTWARE_FACE_HEIGHT = 80;
+    public static final int SOFTWARE_FACE_MIN_SIZE = 16;
+
+    // reopening a lost camera: delay doubles from the initial one up to the cap, for at most MAX_ATTEMPTS tries
+    public static final long RECOVERY_INITIAL_DELAY_MILLIS = 250;
+    public static final long RECOVERY_MAX_DELAY_MILLIS = 8000;
+    public static final int RECOVERY_MAX_ATTEMPTS = 8;
+
+    // TEST recording, encoded straight from the camera; MIMETYPE_VIDEO_HEVC halves the size where supported
+    public static final boolean RECORDING_ENABLED = true;
+    // MediaFormat.MIMETYPE_VIDEO_AVC, spelled out since this module does not see the Android SDK
+    public static final String RECORDING_MIME = "video/avc";
+    public static final int RECORDING_BIT_RATE = 6_000_000;
+    public static final int RECORDING_I_FRAME_INTERVAL_SECONDS = 1;
+    public static final int RECORDING_MIN_WIDTH = 1280;
+    public static final int RECORDING_MIN_HEIGHT = 960;
+    // oldest recordings are deleted beyond this count when a new one starts
+    public static final int RECORDING_MAX_FILES = 10;
+    // TEST is only left through ERROR or a pause, so recordings are cut here; about 45 MB at RECORDING_BIT_RATE
+    public static final int RECORDING_MAX_DURATION_MILLIS = 60_000;
+
+}
@@ -0,0 +1,132 @@
+package com.panda.a6o6test.camera;
+
+/**
+ * Smooths per-frame face detections before they reach the state machine.
+ * Keeps a fixed-size primitive ring buffer of the last results, decides presence by N-of-M voting
+ * and averages the bounds of the detections in the window. Allocation-free after construction.
+ */
+public class FacePresenceTracker {
+
+    public static final int EDGE_NONE = 0;
+    public static final int EDGE_APPEARED = 1;
+    public static final int EDGE_DISAPPEARED = 2;
+
+    private final int window;
+    private final int requiredVotes;
+    private final boolean[] detected;
+    // left, top, right, bottom for every slot of the window
+    private final int[] bounds;
+
+    private int head;
+    private int votes;
+    private long sumLeft, sumTop, sumRight, sumBottom;
+    private volatile boolean present;
+
+    private volatile long updates;
+    private volatile long edges;
+
+    public FacePresenceTracker() {
+        this(CameraConstants.FACE_PRESENCE_VOTES, CameraConstants.FACE_PRESENCE_WINDOW);
+    }
+
+    /**
+     * @param requiredVotes N, detections needed within the window for a face to be present
+     * @param window M, number of recent results considered
+     */
+    public FacePresenceTracker(int requiredVotes, int window) {
+        if(requiredVotes < 1 || requiredVotes > window){
+            throw new IllegalArgumentException("need 1 <= votes <= window, got " + requiredVotes + " of " + window);
+        }
+        this.window = window;
+        this.requiredVotes = requiredVotes;
+        this.detected = new boolean[window];
+        this.bounds = new int[window * 4];
+    }
+
+    /**
+     * Feeds one detection result
+     * @param faceDetected whether the frame had a face, bounds are ignored otherwise
+     * @return {@link #EDGE_APPEARED} or {@link #EDGE_DISAPPEARED} if presence changed, {@link #EDGE_NONE} otherwise
+     */
+    public int update(boolean faceDetected, int left, int top, int right, int bottom) {
+        updates++;
+        int base = head * 4;
+        if(detected[head]){
+            votes--;
+            sumLeft -= bounds[base];
+            sumTop -= bounds[base + 1];
+            sumRight -= bounds[base + 2];
+            sumBottom -= bounds[base + 3];
+        }
+        detected[head] = faceDetected;
+        if(faceDetected){
+            votes++;
+            bounds[base] = left;
+            bounds[base + 1] = top;
+            bounds[base + 2] = right;
+            bounds[base + 3] = bottom;
+            sumLeft += left;
+            sumTop += top;
+            sumRight += right;
+            sumBottom += bottom;
+        }
+        head = (head + 1) % window;
+
+        boolean nowPresent = votes >= requiredVotes;
+        if(nowPresent == present){
+            return EDGE_NONE;
+        }
+        present = nowPresent;
+        edges++;
+        return nowPresent ? EDGE_APPEARED : EDGE_DISAPPEARED;
+    }
+
+    /**
+     * @return voted presence, safe to read from any thread
+     */
+    public boolean isPresent() {
+        return present;
+    }
+
+    /**
+     * @param out receives left, top, right, bottom averaged over detections in the window
+     * @return false if there were no detections in the window
+     */
+    public boolean getSmoothedBounds(int[] out) {
+        if(votes == 0){
+            return false;
+        }
+        out[0] = (int) (sumLeft / votes);
+        out[1] = (int) (sumTop / votes);
+        out[2] = (int) (sumRight / votes);
+        out[3] = (int) (sumBottom / votes);
+        return true;
+    }
+
+    /**
+     * Forgets all results, e.g. when the camera restarts
+     */
+    public void reset() {
+        for (int i = 0; i < window; i++) {
+            detected[i] = false;
+        }
+        head = 0;
+        votes = 0;
+        sumLeft = sumTop = sumRight = sumBottom = 0;
+        present = false;
+    }
+
+    /**
+     * @return number of results fed
+     */
+    public long getUpdates() {
+        return updates;
+    }
+
+    /**
+     * @return number of presence changes reported
+     */
+    public long getEdges() {
+        return edges;
+    }
+}
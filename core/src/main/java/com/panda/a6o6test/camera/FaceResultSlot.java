@@ -0,0 +1,71 @@
+package com.panda.a6o6test.camera;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free single-writer, single-reader mailbox holding only the newest face result.
+ * Implemented as a triple buffer: the writer fills its private buffer and swaps it with the shared one,
+ * the reader swaps the shared one for its private buffer only when something new was published.
+ * Unread results are overwritten rather than queued and nothing is allocated after construction.
+ */
+public final class FaceResultSlot {
+
+    /**
+     * A face result in active array coordinates
+     */
+    public static final class FaceSample {
+        public boolean present;
+        public int left, top, right, bottom;
+        /** capture time in the elapsed realtime base */
+        public long timestampNanos;
+    }
+
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;
+
+    private final FaceSample[] buffers = {new FaceSample(), new FaceSample(), new FaceSample()};
+    // index of the shared buffer, with FRESH set while it holds an unread result
+    private final AtomicInteger shared = new AtomicInteger(1);
+
+    // confined to the writer thread
+    private int writeIndex = 0;
+    // confined to the reader thread
+    private int readIndex = 2;
+
+    private volatile long overwritten;
+
+    /**
+     * @return writer-owned sample to fill before {@link #publish()}
+     */
+    public FaceSample beginWrite() {
+        return buffers[writeIndex];
+    }
+
+    /**
+     * Makes the sample returned by {@link #beginWrite()} the newest result
+     */
+    public void publish() {
+        int previous = shared.getAndSet(writeIndex | FRESH);
+        if((previous & FRESH) != 0){
+            overwritten++;
+        }
+        writeIndex = previous & INDEX_MASK;
+    }
+
+    /**
+     * @return newest published sample, valid until the next call on the reader thread
+     */
+    public FaceSample latest() {
+        if((shared.get() & FRESH) != 0){
+            readIndex = shared.getAndSet(readIndex) & INDEX_MASK;
+        }
+        return buffers[readIndex];
+    }
+
+    /**
+     * @return results replaced by a newer one before the reader got to them
+     */
+    public long getOverwritten() {
+        return overwritten;
+    }
+}
@@ -0,0 +1,89 @@
+package com.panda.a6o6test.camera;
+
+/**
+ * Chooses preview buffer sizes and AE frame rate ranges from what the camera advertises.
+ * Works on plain int arrays, so it does not depend on camera2 classes.
+ */
+public final class PreviewSizeSelector {
+
+    /**
+     * Relative aspect ratio difference still considered a match, covers sizes like 1440x1080 vs 1280x960 rounding
+     */
+    public static final float ASPECT_TOLERANCE = 0.01f;
+
+    private PreviewSizeSelector(){}
+
+    /**
+     * Picks the smallest output size with the view's aspect ratio that still covers the view at its pixel size.
+     * If none covers it, the largest size with matching aspect ratio is taken, and if the aspect ratio
+     * is not offered at all, the smallest covering size of any aspect ratio.
+     * @param widths output widths in sensor orientation, as listed by the stream configuration map
+     * @param heights output heights, same order as widths
+     * @param viewWidth view width in pixels
+     * @param viewHeight view height in pixels
+     * @param sensorOrientation SENSOR_ORIENTATION, view dimensions are swapped for 90 and 270
+     * @return index of the chosen size, or -1 if there are no sizes or the view has no size yet
+     */
+    public static int chooseSize(int[] widths, int[] heights, int viewWidth, int viewHeight, int sensorOrientation) {
+        if(widths.length == 0 || viewWidth <= 0 || viewHeight <= 0){
+            return -1;
+        }
+        boolean swap = sensorOrientation % 180 != 0;
+        int targetWidth = swap ? viewHeight : viewWidth;
+        int targetHeight = swap ? viewWidth : viewHeight;
+        float targetAspect = (float) targetWidth / targetHeight;
+
+        int smallestCovering = -1;
+        int largestMatching = -1;
+        int smallestCoveringAnyAspect = -1;
+        for (int i = 0; i < widths.length; i++) {
+            boolean covers = widths[i] >= targetWidth && heights[i] >= targetHeight;
+            boolean matches = Math.abs((float) widths[i] / heights[i] - targetAspect) <= targetAspect * ASPECT_TOLERANCE;
+            if(matches && covers && (smallestCovering < 0 || area(widths, heights, i) < area(widths, heights, smallestCovering))){
+                smallestCovering = i;
+            }
+            if(matches && (largestMatching < 0 || area(widths, heights, i) > area(widths, heights, largestMatching))){
+                largestMatching = i;
+            }
+            if(covers && (smallestCoveringAnyAspect < 0 || area(widths, heights, i) < area(widths, heights, smallestCoveringAnyAspect))){
+                smallestCoveringAnyAspect = i;
+            }
+        }
+        if(smallestCovering >= 0){
+            return smallestCovering;
+        }
+        if(largestMatching >= 0){
+            return largestMatching;
+        }
+        return smallestCoveringAnyAspect;
+    }
+
+    /**
+     * Picks the AE target range whose upper bound equals the target frame rate, preferring the lowest lower bound
+     * so exposure can still stretch in low light. Without an exact match, the range containing the target
+     * with the lowest upper bound is taken.
+     * @param lowers lower bounds of CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES
+     * @param uppers upper bounds, same order as lowers
+     * @param targetFps desired preview frame rate
+     * @return index of the chosen range, or -1 if no range contains the target
+     */
+    public static int chooseFpsRange(int[] lowers, int[] uppers, int targetFps) {
+        int exact = -1;
+        int containing = -1;
+        for (int i = 0; i < lowers.length; i++) {
+            if(uppers[i] == targetFps && (exact < 0 || lowers[i] < lowers[exact])){
+                exact = i;
+            }
+            if(lowers[i] <= targetFps && uppers[i] >= targetFps
+                    && (containing < 0 || uppers[i] < uppers[containing]
+                        || (uppers[i] == uppers[containing] && lowers[i] < lowers[containing]))){
+                containing = i;
+            }
+        }
+        return exact >= 0 ? exact : containing;
+    }
+
+    private static long area(int[] widths, int[] heights, int i) {
+        return (long) widths[i] * heights[i];
+    }
+}
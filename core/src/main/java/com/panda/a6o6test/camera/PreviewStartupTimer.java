@@ -0,0 +1,79 @@
+package com.panda.a6o6test.camera;
+
+import java.util.Locale;
+
+/**
+ * Timestamps of the path from resume to the first preview frame, to track time-to-preview.
+ * Stages are marked from the main and camera threads, readers may be on any thread.
+ */
+public final class PreviewStartupTimer {
+
+    private volatile long resumeNanos;
+    private volatile long openedNanos;
+    private volatile long configuredNanos;
+    private volatile long firstFrameNanos;
+
+    void markResume() {
+        openedNanos = 0;
+        configuredNanos = 0;
+        firstFrameNanos = 0;
+        resumeNanos = System.nanoTime();
+    }
+
+    void markOpened() {
+        openedNanos = System.nanoTime();
+    }
+
+    void markConfigured() {
+        configuredNanos = System.nanoTime();
+    }
+
+    /**
+     * @return true only for the first frame after resume
+     */
+    boolean markFirstFrame() {
+        if(firstFrameNanos != 0 || resumeNanos == 0){
+            return false;
+        }
+        firstFrameNanos = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * @return resume to camera opened, in milliseconds, or -1 if not reached yet
+     */
+    public long getOpenMillis() {
+        return between(resumeNanos, openedNanos);
+    }
+
+    /**
+     * @return camera opened to capture session configured, in milliseconds, or -1 if not reached yet
+     */
+    public long getConfigureMillis() {
+        return between(openedNanos, configuredNanos);
+    }
+
+    /**
+     * @return session configured to first completed capture, in milliseconds, or -1 if not reached yet
+     */
+    public long getFirstFrameMillis() {
+        return between(configuredNanos, firstFrameNanos);
+    }
+
+    /**
+     * @return resume to first completed capture, in milliseconds, or -1 if not reached yet
+     */
+    public long getTimeToPreviewMillis() {
+        return between(resumeNanos, firstFrameNanos);
+    }
+
+    private static long between(long from, long to) {
+        return from == 0 || to == 0 ? -1 : (to - from) / 1_000_000L;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "time to preview %d ms (open %d ms, configure %d ms, first frame %d ms)",
+                getTimeToPreviewMillis(), getOpenMillis(), getConfigureMillis(), getFirstFrameMillis());
+    }
+}
@@ -0,0 +1,81 @@
+package com.panda.a6o6test.camera;
+
+/**
+ * Decides when the encoder surface of a TEST recording is targeted by the repeating request.
+ * The surface is only targeted while TEST is wanted and the encoder runs: frames sent to a stopped encoder
+ * back up and stall the camera pipeline. Not thread safe, confined to the camera thread.
+ */
+public class RecordingGate {
+
+    private boolean wanted;
+    private boolean targeted;
+    private long failures;
+
+    /**
+     * On entering or leaving TEST
+     * @param test whether TEST is the current state
+     * @return whether the surface stopped being targeted and the repeating request has to be rebuilt
+     */
+    public boolean setWanted(boolean test) {
+        wanted = test;
+        return !test && untarget();
+    }
+
+    /**
+     * On the encoder accepting frames
+     * @return whether the surface is now targeted and the repeating request has to be rebuilt,
+     * false if TEST was left meanwhile and the encoder should be stopped
+     */
+    public boolean onStarted() {
+        if(!wanted){
+            return false;
+        }
+        targeted = true;
+        return true;
+    }
+
+    /**
+     * On the encoder failing to start, failing to finish a file or stopping on an error
+     * @return whether the surface was targeted and the repeating request has to be rebuilt without it
+     */
+    public boolean onFailed() {
+        failures++;
+        return untarget();
+    }
+
+    /**
+     * On a recording reaching its maximum duration while TEST lasts, no new one starts until TEST is entered again
+     * @return whether the surface was targeted, the repeating request has to be rebuilt and the encoder stopped
+     */
+    public boolean onLimitReached() {
+        return untarget();
+    }
+
+    private boolean untarget() {
+        boolean wasTargeted = targeted;
+        targeted = false;
+        return wasTargeted;
+    }
+
+    /**
+     * @return whether the repeating request should include the encoder surface
+     */
+    public boolean isTargeted() {
+        return targeted;
+    }
+
+    /**
+     * @return recordings that failed since construction
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Forgets TEST and the target, e.g. when the camera is closed
+     */
+    public void reset() {
+        wanted = false;
+        targeted = false;
+    }
+}
@@ -0,0 +1,64 @@
+package com.panda.a6o6test.camera;
+
+/**
+ * Bounded exponential backoff between camera reopen attempts: the delay doubles from the initial one
+ * up to a cap, and after the maximum number of attempts recovery gives up until {@link #reset()}.
+ */
+public class RecoveryBackoff {
+
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final int maxAttempts;
+
+    private int attempts;
+
+    /**
+     * Backoff using {@link CameraConstants} limits
+     */
+    public RecoveryBackoff() {
+        this(CameraConstants.RECOVERY_INITIAL_DELAY_MILLIS, CameraConstants.RECOVERY_MAX_DELAY_MILLIS,
+                CameraConstants.RECOVERY_MAX_ATTEMPTS);
+    }
+
+    /**
+     * @param initialDelayMillis delay before the first attempt
+     * @param maxDelayMillis upper bound of any delay
+     * @param maxAttempts attempts before giving up
+     */
+    public RecoveryBackoff(long initialDelayMillis, long maxDelayMillis, int maxAttempts) {
+        if(initialDelayMillis <= 0 || maxDelayMillis < initialDelayMillis || maxAttempts < 1){
+            throw new IllegalArgumentException("invalid backoff limits");
+        }
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Counts an attempt
+     * @return delay before that attempt, or -1 if all attempts are used up
+     */
+    public long nextDelayMillis() {
+        if(attempts >= maxAttempts){
+            return -1;
+        }
+        // shift is bounded, so the delay cannot overflow before it is capped
+        long delay = initialDelayMillis << Math.min(attempts, 30);
+        attempts++;
+        return Math.min(delay, maxDelayMillis);
+    }
+
+    /**
+     * @return attempts made since the last reset
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Starts over after a successful recovery
+     */
+    public void reset() {
+        attempts = 0;
+    }
+}
@@ -0,0 +1,90 @@
+package com.panda.a6o6test.camera;
+
+import java.util.Locale;
+
+/**
+ * Counters of camera recovery, written on the camera thread and readable from any thread.
+ * Latency is measured from losing the camera to the first configured session afterwards.
+ */
+public final class RecoveryStats {
+
+    private volatile long failures;
+    private volatile long attempts;
+    private volatile long recoveries;
+    private volatile long givenUp;
+    private volatile long lastLatencyMillis;
+    private volatile long maxLatencyMillis;
+    private volatile long totalLatencyMillis;
+
+    void recordFailure() {
+        failures++;
+    }
+
+    void recordAttempt() {
+        attempts++;
+    }
+
+    void recordRecovery(long latencyMillis) {
+        lastLatencyMillis = latencyMillis;
+        totalLatencyMillis += latencyMillis;
+        if(latencyMillis > maxLatencyMillis){
+            maxLatencyMillis = latencyMillis;
+        }
+        recoveries++;
+    }
+
+    void recordGiveUp() {
+        givenUp++;
+    }
+
+    /**
+     * @return disconnects and errors reported for an open camera
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return reopen attempts
+     */
+    public long getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @return failures that ended with a working session again
+     */
+    public long getRecoveries() {
+        return recoveries;
+    }
+
+    /**
+     * @return failures that ended in ERROR, because they were not recoverable or attempts ran out
+     */
+    public long getGivenUp() {
+        return givenUp;
+    }
+
+    public long getLastLatencyMillis() {
+        return lastLatencyMillis;
+    }
+
+    public long getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    /**
+     * @return mean latency of successful recoveries, 0 before the first one
+     */
+    public long getAverageLatencyMillis() {
+        long count = recoveries;
+        return count == 0 ? 0 : totalLatencyMillis / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "failures=%d attempts=%d recoveries=%d givenUp=%d latency last=%dms avg=%dms max=%dms",
+                getFailures(), getAttempts(), getRecoveries(), getGivenUp(),
+                getLastLatencyMillis(), getAverageLatencyMillis(), getMaxLatencyMillis());
+    }
+}
@@ -0,0 +1,95 @@
+package com.panda.a6o6test.camera;
+
+/**
+ * Maps rectangles from the camera active array coordinate system to view coordinates.
+ * The affine coefficients are computed once from the sensor geometry and the view size
+ * and rebuilt only when one of them changes, mapping itself does not allocate.
+ */
+public final class SensorToViewTransform {
+
+    private int activeWidth, activeHeight, sensorOrientation, viewWidth, viewHeight;
+    private boolean mirrored;
+    private boolean valid;
+
+    // view = [a b tx; d e ty] * sensor
+    private float a, b, tx, d, e, ty;
+
+    /**
+     * @param activeWidth width of SENSOR_INFO_ACTIVE_ARRAY_SIZE
+     * @param activeHeight height of SENSOR_INFO_ACTIVE_ARRAY_SIZE
+     * @param sensorOrientation SENSOR_ORIENTATION, clockwise degrees, multiple of 90
+     * @param mirrored true for front facing lenses, whose preview is shown mirrored
+     * @return whether the transform was rebuilt
+     */
+    public boolean setSensorGeometry(int activeWidth, int activeHeight, int sensorOrientation, boolean mirrored) {
+        if(this.activeWidth == activeWidth && this.activeHeight == activeHeight
+                && this.sensorOrientation == sensorOrientation && this.mirrored == mirrored){
+            return false;
+        }
+        this.activeWidth = activeWidth;
+        this.activeHeight = activeHeight;
+        this.sensorOrientation = sensorOrientation;
+        this.mirrored = mirrored;
+        rebuild();
+        return true;
+    }
+
+    /**
+     * @return whether the transform was rebuilt
+     */
+    public boolean setViewSize(int viewWidth, int viewHeight) {
+        if(this.viewWidth == viewWidth && this.viewHeight == viewHeight){
+            return false;
+        }
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        rebuild();
+        return true;
+    }
+
+    /**
+     * @return whether both the sensor geometry and the view size are known
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Maps a sensor rectangle into view coordinates. Rotations are multiples of 90 degrees,
+     * so the result stays axis aligned.
+     * @param out receives left, top, right, bottom
+     */
+    public void mapRect(int left, int top, int right, int bottom, float[] out) {
+        float x0 = a * left + b * top + tx;
+        float y0 = d * left + e * top + ty;
+        float x1 = a * right + b * bottom + tx;
+        float y1 = d * right + e * bottom + ty;
+        out[0] = Math.min(x0, x1);
+        out[1] = Math.min(y0, y1);
+        out[2] = Math.max(x0, x1);
+        out[3] = Math.max(y0, y1);
+    }
+
+    // sensor -> normalized [-1, 1] -> rotate clockwise by sensor orientation -> mirror -> view
+    private void rebuild() {
+        valid = activeWidth > 0 && activeHeight > 0 && viewWidth > 0 && viewHeight > 0;
+        if(!valid){
+            return;
+        }
+        int quarterTurns = ((sensorOrientation % 360 + 360) % 360) / 90;
+        int cos = quarterTurns == 0 ? 1 : (quarterTurns == 2 ? -1 : 0);
+        int sin = quarterTurns == 1 ? 1 : (quarterTurns == 3 ? -1 : 0);
+        int flip = mirrored ? -1 : 1;
+        float sx = 2f / activeWidth;
+        float sy = 2f / activeHeight;
+        float hw = viewWidth / 2f;
+        float hh = viewHeight / 2f;
+
+        a = hw * flip * cos * sx;
+        b = -hw * flip * sin * sy;
+        tx = hw * (1 - flip * cos + flip * sin);
+        d = hh * sin * sx;
+        e = hh * cos * sy;
+        ty = hh * (1 - sin - cos);
+    }
+}
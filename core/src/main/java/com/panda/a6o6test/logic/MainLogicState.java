@@ -0,0 +1,8 @@
+package com.panda.a6o6test.logic;
+
+/**
+ * Possible UI states
+ */
+public enum MainLogicState {
+    NO_PERMISSION, ERROR, IDLE, BAD_ANGLE, WAITING_ANGLE, CONFIRMED_ANGLE, NO_FACE, ALL_GO, TEST
+}
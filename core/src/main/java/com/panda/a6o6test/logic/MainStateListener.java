@@ -0,0 +1,19 @@
+package com.panda.a6o6test.logic;
+
+public interface MainStateListener {
+
+    /**
+     *
+     * @param state reported state of the main FSM
+     */
+    void onStateChanged(MainLogicState state);
+
+    /**
+     * Lossless listeners are called on the state machine looper for every single transition.
+     * Others are called on the main thread at most once per frame, with only the latest state of that frame.
+     * @return whether this listener needs every transition
+     */
+    default boolean isLossless(){
+        return false;
+    }
+}
@@ -0,0 +1,16 @@
+package com.panda.a6o6test.logic;
+
+/**
+ * Inputs of {@link StateMachineCore}, posted to its event queue by ordinal.
+ * Transitions they trigger are declared in {@link TransitionTable}
+ */
+public enum StateEvent {
+    BAD_ANGLE, GOOD_ANGLE, CONFIRM_ANGLE, IDLE, NO_FACE_FROM_BUTTON, NO_FACE_FROM_DETECTION, ALL_GO, TEST,
+    ERROR, NO_PERMISSION, PAUSE, RESUME, QUALITY_OK, QUALITY_BAD;
+
+    private static final StateEvent[] VALUES = values();
+
+    static StateEvent fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
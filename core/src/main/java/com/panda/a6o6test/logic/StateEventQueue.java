@@ -0,0 +1,110 @@
+package com.panda.a6o6test.logic;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free multi-producer, single-consumer ring buffer of int events, each with a long stamp,
+ * e.g. when it was posted.
+ * Producers claim slots with a CAS on the tail and publish them through a per-slot sequence,
+ * the single consumer drains published slots in order. Nothing is allocated after construction.
+ */
+public final class StateEventQueue {
+
+    /**
+     * Receives drained events on the consumer thread
+     */
+    public interface Consumer {
+        void accept(int event, long stamp);
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final int[] events;
+    private final long[] stamps;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+
+    // confined to the consumer thread
+    private long head;
+
+    /**
+     * @param capacity power of two
+     */
+    public StateEventQueue(int capacity) {
+        if(capacity <= 0 || Integer.bitCount(capacity) != 1){
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.events = new int[capacity];
+        this.stamps = new long[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Enqueues an event with a zero stamp. Safe to call from any thread.
+     * @return false if the queue is full and the event was not enqueued
+     */
+    public boolean offer(int event) {
+        return offer(event, 0);
+    }
+
+    /**
+     * Enqueues an event. Safe to call from any thread.
+     * @param stamp handed to the consumer together with this event
+     * @return false if the queue is full and the event was not enqueued
+     */
+    public boolean offer(int event, long stamp) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if(diff == 0){
+                if(tail.compareAndSet(pos, pos + 1)){
+                    events[index] = event;
+                    stamps[index] = stamp;
+                    sequences.lazySet(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            }else if(diff < 0){
+                return false;
+            }else{
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Hands published events to the consumer in FIFO order. Must only be called from the consumer thread.
+     * @param limit maximum number of events to drain in this batch
+     * @return number of drained events
+     */
+    public int drain(Consumer consumer, int limit) {
+        int count = 0;
+        while (count < limit) {
+            int index = (int) head & mask;
+            if(sequences.get(index) != head + 1){
+                break;
+            }
+            int event = events[index];
+            long stamp = stamps[index];
+            sequences.lazySet(index, head + capacity);
+            head++;
+            count++;
+            consumer.accept(event, stamp);
+        }
+        return count;
+    }
+
+    /**
+     * @return maximum number of events the queue can hold
+     */
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,149 @@
+package com.panda.a6o6test.logic;
+
+import com.panda.a6o6test.sensors.SensorConstants;
+
+/**
+ * Platform independent part of the UI state machine: applies events to the current state.
+ * Not thread safe, the owner confines it to one thread and supplies the timer for the timed angle confirmation.
+ * ALL_GO is only entered while frame quality is good, a face found during bad quality is held until it recovers.
+ * Faces are only reported on presence edges, ALL_GO when one appears and NO_FACE_FROM_DETECTION when it is gone,
+ * so a face already in frame when NO_FACE is entered goes on to ALL_GO right away.
+ */
+public final class StateMachineCore {
+
+    /**
+     * Delayed delivery of {@link StateEvent#CONFIRM_ANGLE}, back on the thread owning the core
+     */
+    public interface Timer {
+        void schedule(long delayMillis);
+
+        void cancel();
+    }
+
+    /**
+     * Called for every transition, on the thread applying the event
+     */
+    public interface TransitionListener {
+        void onTransition(MainLogicState from, MainLogicState to, StateEvent event);
+    }
+
+    private final TransitionTable transitions;
+    private final Timer timer;
+    private final TransitionListener listener;
+
+    private MainLogicState state;
+    private boolean resumed;
+    // no quality reports means nothing to gate on
+    private boolean qualityOk = true;
+    private boolean allGoPending;
+    // between the ALL_GO and NO_FACE_FROM_DETECTION edges, whether or not the state accepted them
+    private boolean facePresent;
+    // latest gated angle decision, the sensor side only reports changes
+    private boolean angleKnown;
+    private boolean angleGood;
+
+    public StateMachineCore(TransitionTable transitions, Timer timer, TransitionListener listener) {
+        this(transitions, timer, listener, MainLogicState.NO_PERMISSION);
+    }
+
+    /**
+     * @param initial state to start in instead of NO_PERMISSION, e.g. to resume a recording that lost its beginning
+     */
+    public StateMachineCore(TransitionTable transitions, Timer timer, TransitionListener listener, MainLogicState initial) {
+        this.transitions = transitions;
+        this.timer = timer;
+        this.listener = listener;
+        this.state = initial;
+    }
+
+    public MainLogicState getState() {
+        return state;
+    }
+
+    public void apply(StateEvent event){
+        switch (event){
+            case PAUSE:
+                resumed = false;
+                // analysis stops with the camera, the next verdict comes with the next frames
+                qualityOk = true;
+                // face tracking starts over with the camera, angle gating with the sensors
+                facePresent = false;
+                angleKnown = false;
+                timer.cancel();
+                break;
+            case RESUME:
+                resumed = true;
+                break;
+            case QUALITY_OK:
+                qualityOk = true;
+                if(allGoPending){
+                    allGoPending = false;
+                    transition(StateEvent.ALL_GO);
+                }
+                break;
+            case QUALITY_BAD:
+                qualityOk = false;
+                if(state == MainLogicState.ALL_GO){
+                    // the face is still there, it only has to wait for better frames
+                    allGoPending = true;
+                }
+                transition(event);
+                break;
+            case ALL_GO:
+                facePresent = true;
+                if(!qualityOk && transitions.isAllowed(state, event)){
+                    allGoPending = true;
+                    break;
+                }
+                transition(event);
+                break;
+            case GOOD_ANGLE:
+            case BAD_ANGLE:
+                angleKnown = true;
+                angleGood = event == StateEvent.GOOD_ANGLE;
+                transition(event);
+                break;
+            case NO_FACE_FROM_DETECTION:
+                facePresent = false;
+                allGoPending = false;
+                transition(event);
+                break;
+            default:
+                transition(event);
+                break;
+        }
+    }
+
+    private void transition(StateEvent event){
+        MainLogicState next = transitions.next(state, event);
+        if(next == null){
+            return;
+        }
+        if(next != MainLogicState.NO_FACE){
+            allGoPending = false;
+        }
+        MainLogicState previous = state;
+        state = next;
+        listener.onTransition(previous, next, event);
+        decideOnTimedTransition(next);
+        StateEvent angle = angleGood ? StateEvent.GOOD_ANGLE : StateEvent.BAD_ANGLE;
+        if(angleKnown && transitions.isAllowed(next, angle)){
+            // no new decision will come for an angle that did not change
+            transition(angle);
+            return;
+        }
+        if(next == MainLogicState.NO_FACE && facePresent){
+            // no new edge will come for a face that is already there
+            apply(StateEvent.ALL_GO);
+        }
+    }
+
+    // schedule transition if phone started being upright, cancel on any other state
+    private void decideOnTimedTransition(MainLogicState state){
+        if(state != MainLogicState.WAITING_ANGLE){
+            timer.cancel();
+        }else if(resumed){
+            timer.schedule(SensorConstants.UPRIGHT_STABLE_TIME_MILLIS);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.panda.a6o6test.logic;
+
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Declarative set of legal transitions of {@link StateMachineCore}.
+ * For every event the allowed source states are packed into an int bitmask indexed by state ordinal,
+ * so checking a transition is a single array read and bit test.
+ */
+public final class TransitionTable {
+
+    private static final MainLogicState[] STATES = MainLogicState.values();
+    private static final StateEvent[] EVENTS = StateEvent.values();
+
+    private static final TransitionTable DEFAULT = new TransitionTable()
+            .allow(StateEvent.BAD_ANGLE, MainLogicState.BAD_ANGLE, EnumSet.of(MainLogicState.IDLE, MainLogicState.NO_FACE,
+                    MainLogicState.CONFIRMED_ANGLE, MainLogicState.ALL_GO, MainLogicState.WAITING_ANGLE))
+            .allow(StateEvent.GOOD_ANGLE, MainLogicState.WAITING_ANGLE, EnumSet.of(MainLogicState.BAD_ANGLE))
+            .allow(StateEvent.CONFIRM_ANGLE, MainLogicState.CONFIRMED_ANGLE, EnumSet.of(MainLogicState.WAITING_ANGLE))
+            .allow(StateEvent.IDLE, MainLogicState.IDLE, EnumSet.of(MainLogicState.NO_PERMISSION, MainLogicState.ERROR))
+            .allow(StateEvent.NO_FACE_FROM_BUTTON, MainLogicState.NO_FACE, EnumSet.of(MainLogicState.CONFIRMED_ANGLE))
+            .allow(StateEvent.NO_FACE_FROM_DETECTION, MainLogicState.NO_FACE, EnumSet.of(MainLogicState.ALL_GO))
+            .allow(StateEvent.ALL_GO, MainLogicState.ALL_GO, EnumSet.of(MainLogicState.NO_FACE))
+            .allow(StateEvent.QUALITY_BAD, MainLogicState.NO_FACE, EnumSet.of(MainLogicState.ALL_GO))
+            .allow(StateEvent.TEST, MainLogicState.TEST, EnumSet.of(MainLogicState.ALL_GO))
+            .allow(StateEvent.ERROR, MainLogicState.ERROR, EnumSet.allOf(MainLogicState.class))
+            .allow(StateEvent.NO_PERMISSION, MainLogicState.NO_PERMISSION, EnumSet.complementOf(EnumSet.of(MainLogicState.TEST)));
+
+    private final int[] sourceMasks = new int[EVENTS.length];
+    private final MainLogicState[] targets = new MainLogicState[EVENTS.length];
+
+    private TransitionTable(){}
+
+    /**
+     * @return transitions of the main UI flow
+     */
+    public static TransitionTable getDefault(){
+        return DEFAULT;
+    }
+
+    private TransitionTable allow(StateEvent event, MainLogicState target, Set<MainLogicState> sources){
+        targets[event.ordinal()] = target;
+        for (MainLogicState source : sources) {
+            sourceMasks[event.ordinal()] |= 1 << source.ordinal();
+        }
+        return this;
+    }
+
+    /**
+     * @return whether the event causes a transition when in the given state
+     */
+    public boolean isAllowed(MainLogicState from, StateEvent event){
+        return (sourceMasks[event.ordinal()] & (1 << from.ordinal())) != 0;
+    }
+
+    /**
+     * @return state after applying the event, or null if the event is ignored in the given state
+     */
+    public MainLogicState next(MainLogicState from, StateEvent event){
+        return isAllowed(from, event) ? targets[event.ordinal()] : null;
+    }
+
+    /**
+     * @return all states reachable from the initial state, including itself
+     */
+    public EnumSet<MainLogicState> reachableFrom(MainLogicState initial){
+        EnumSet<MainLogicState> reached = EnumSet.of(initial);
+        ArrayDeque<MainLogicState> pending = new ArrayDeque<>();
+        pending.add(initial);
+        while (!pending.isEmpty()){
+            MainLogicState from = pending.poll();
+            for (StateEvent event : EVENTS) {
+                MainLogicState to = next(from, event);
+                if(to != null && reached.add(to)){
+                    pending.add(to);
+                }
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * @return states that can never be entered from the initial state
+     */
+    public EnumSet<MainLogicState> unreachableFrom(MainLogicState initial){
+        return EnumSet.complementOf(reachableFrom(initial));
+    }
+
+    /**
+     * @return the transition graph, one "FROM --EVENT--> TO" edge per line
+     */
+    public String dump(){
+        StringBuilder builder = new StringBuilder();
+        for (MainLogicState from : STATES) {
+            for (StateEvent event : EVENTS) {
+                MainLogicState to = next(from, event);
+                if(to != null){
+                    builder.append(from).append(" --").append(event).append("--> ").append(to).append('\n');
+                }
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,118 @@
+package com.panda.a6o6test.sensors;
+
+/**
+ * Decides whether the device angle is good, with hysteresis and a minimum dwell time,
+ * so samples hovering around the tolerance do not make the state machine thrash.
+ * The angle becomes good only within the enter thresholds and stays good until it leaves the wider exit thresholds.
+ * A changed decision is reported only after it held for the dwell time.
+ */
+public class AngleGate {
+
+    private final float pitchEnterDeg, rollEnterDeg, pitchExitDeg, rollExitDeg;
+    private final long minDwellNanos;
+
+    private boolean hasDecision;
+    private boolean good;
+    private boolean candidate;
+    private long candidateSinceNanos;
+    private boolean ungated;
+
+    private volatile long ungatedFlips;
+    private volatile long candidateFlips;
+    private volatile long reportedFlips;
+
+    /**
+     * Gate using {@link SensorConstants} tolerances as exit thresholds
+     */
+    public AngleGate() {
+        this(SensorConstants.PITCH_TOLERANCE_DEG - SensorConstants.ANGLE_HYSTERESIS_DEG,
+                SensorConstants.ROLL_TOLERANCE_DEG - SensorConstants.ANGLE_HYSTERESIS_DEG,
+                SensorConstants.PITCH_TOLERANCE_DEG, SensorConstants.ROLL_TOLERANCE_DEG,
+                SensorConstants.ANGLE_MIN_DWELL_MILLIS);
+    }
+
+    /**
+     * @param pitchEnterDeg pitch must be below this to become good
+     * @param rollEnterDeg roll must be below this to become good
+     * @param pitchExitDeg pitch must reach this to become bad again
+     * @param rollExitDeg roll must reach this to become bad again
+     * @param minDwellMillis how long a changed decision has to hold before it is reported
+     */
+    public AngleGate(float pitchEnterDeg, float rollEnterDeg, float pitchExitDeg, float rollExitDeg, long minDwellMillis) {
+        if(pitchEnterDeg > pitchExitDeg || rollEnterDeg > rollExitDeg){
+            throw new IllegalArgumentException("enter thresholds must not exceed exit thresholds");
+        }
+        this.pitchEnterDeg = pitchEnterDeg;
+        this.rollEnterDeg = rollEnterDeg;
+        this.pitchExitDeg = pitchExitDeg;
+        this.rollExitDeg = rollExitDeg;
+        this.minDwellNanos = minDwellMillis * 1_000_000L;
+    }
+
+    /**
+     * @param pitch in degrees as delta from upright
+     * @param roll in degrees as delta from upright
+     * @param timestampNanos monotonic sample time
+     * @return whether the angle is good after gating
+     */
+    public boolean update(float pitch, float roll, long timestampNanos) {
+        float absPitch = Math.abs(pitch);
+        float absRoll = Math.abs(roll);
+        boolean rawGood = candidate
+                ? absPitch < pitchExitDeg && absRoll < rollExitDeg
+                : absPitch < pitchEnterDeg && absRoll < rollEnterDeg;
+        // what a single threshold without any gating would have decided
+        boolean ungatedGood = absPitch < pitchExitDeg && absRoll < rollExitDeg;
+
+        if(!hasDecision){
+            hasDecision = true;
+            good = candidate = rawGood;
+            ungated = ungatedGood;
+            candidateSinceNanos = timestampNanos;
+            return good;
+        }
+        if(ungatedGood != ungated){
+            ungated = ungatedGood;
+            ungatedFlips++;
+        }
+        if(rawGood != candidate){
+            candidate = rawGood;
+            candidateSinceNanos = timestampNanos;
+            candidateFlips++;
+        }
+        if(candidate != good && timestampNanos - candidateSinceNanos >= minDwellNanos){
+            good = candidate;
+            reportedFlips++;
+        }
+        return good;
+    }
+
+    /**
+     * Forgets the current decision, e.g. when listening restarts
+     */
+    public void reset() {
+        hasDecision = false;
+        candidate = false;
+    }
+
+    /**
+     * @return changes of the gated decision that were reported
+     */
+    public long getReportedFlips() {
+        return reportedFlips;
+    }
+
+    /**
+     * @return decision changes a plain tolerance check would have made, but hysteresis absorbed
+     */
+    public long getSuppressedByHysteresis() {
+        return Math.max(0, ungatedFlips - candidateFlips);
+    }
+
+    /**
+     * @return decision changes that did not hold for the dwell time
+     */
+    public long getSuppressedByDwell() {
+        return Math.max(0, candidateFlips - reportedFlips);
+    }
+}
@@ -0,0 +1,164 @@
+package com.panda.a6o6test.sensors;
+
+/**
+ * Complementary filter estimating the world "up" direction in device coordinates
+ * from raw accelerometer and gyroscope samples, for devices without a rotation vector sensor
+ * or when the rotation vector's own fusion costs more than pitch and roll need.
+ * <p>
+ * Gyroscope samples rotate the estimate, which follows fast turns without noise; the accelerometer pulls it back
+ * with a time constant, which cancels gyro drift. Accelerometer samples far from 1 g contain linear acceleration
+ * and are not trusted. Without gyroscope samples the accelerometer is low-pass filtered with the same time constant.
+ * Allocation-free and confined to the sensor thread.
+ */
+public final class GravityFilter {
+
+    private static final float STANDARD_GRAVITY = 9.80665f;
+    // a longer gap means missed samples, integrating across it would be a guess
+    private static final float MAX_GYRO_STEP_SECONDS = 0.2f;
+
+    private final float timeConstantSeconds;
+    private final float accelTolerance;
+
+    private float upX, upY, upZ;
+    private boolean initialized;
+
+    private float accelX, accelY, accelZ;
+    private boolean accelTrusted;
+    private long lastAccelNanos;
+
+    private boolean gyroActive;
+    private long lastGyroNanos;
+
+    /**
+     * Filter using {@link SensorConstants} tuning
+     */
+    public GravityFilter() {
+        this(SensorConstants.GRAVITY_FILTER_TIME_CONSTANT_MILLIS / 1000f, SensorConstants.GRAVITY_FILTER_ACCEL_TOLERANCE);
+    }
+
+    /**
+     * @param timeConstantSeconds how fast the accelerometer corrects the estimate, longer is smoother
+     * @param accelTolerance accepted deviation of the acceleration magnitude from 1 g, as a fraction of g
+     */
+    public GravityFilter(float timeConstantSeconds, float accelTolerance) {
+        if(timeConstantSeconds <= 0 || accelTolerance <= 0){
+            throw new IllegalArgumentException("time constant and tolerance must be positive");
+        }
+        this.timeConstantSeconds = timeConstantSeconds;
+        this.accelTolerance = accelTolerance;
+    }
+
+    /**
+     * @param x TYPE_ACCELEROMETER values, m/s^2
+     * @param timestampNanos event timestamp
+     */
+    public void onAccelerometer(float x, float y, float z, long timestampNanos) {
+        float norm = (float) Math.sqrt(x * x + y * y + z * z);
+        if(norm < 1e-3f){
+            return;
+        }
+        accelX = x / norm;
+        accelY = y / norm;
+        accelZ = z / norm;
+        accelTrusted = Math.abs(norm - STANDARD_GRAVITY) <= accelTolerance * STANDARD_GRAVITY;
+        if(!initialized){
+            // the first sample is the best guess there is, even if the device is moving
+            upX = accelX;
+            upY = accelY;
+            upZ = accelZ;
+            initialized = true;
+        }else if(!gyroActive && accelTrusted){
+            blendTowardAccel(seconds(timestampNanos - lastAccelNanos));
+        }
+        lastAccelNanos = timestampNanos;
+    }
+
+    /**
+     * @param x TYPE_GYROSCOPE values, rad/s around the device axes
+     * @param timestampNanos event timestamp
+     */
+    public void onGyroscope(float x, float y, float z, long timestampNanos) {
+        boolean hadTimestamp = gyroActive;
+        gyroActive = true;
+        long previousNanos = lastGyroNanos;
+        lastGyroNanos = timestampNanos;
+        if(!initialized || !hadTimestamp){
+            return;
+        }
+        float dt = seconds(timestampNanos - previousNanos);
+        if(dt <= 0 || dt > MAX_GYRO_STEP_SECONDS){
+            return;
+        }
+        // a world fixed vector seen from the device turns the opposite way: d(up)/dt = up x omega
+        float rx = upY * z - upZ * y;
+        float ry = upZ * x - upX * z;
+        float rz = upX * y - upY * x;
+        upX += rx * dt;
+        upY += ry * dt;
+        upZ += rz * dt;
+        if(accelTrusted){
+            blendTowardAccel(dt);
+        }else{
+            normalize();
+        }
+    }
+
+    private void blendTowardAccel(float dt) {
+        if(dt <= 0){
+            return;
+        }
+        float alpha = timeConstantSeconds / (timeConstantSeconds + dt);
+        upX = alpha * upX + (1 - alpha) * accelX;
+        upY = alpha * upY + (1 - alpha) * accelY;
+        upZ = alpha * upZ + (1 - alpha) * accelZ;
+        normalize();
+    }
+
+    private void normalize() {
+        float norm = (float) Math.sqrt(upX * upX + upY * upY + upZ * upZ);
+        if(norm > 1e-6f){
+            upX /= norm;
+            upY /= norm;
+            upZ /= norm;
+        }
+    }
+
+    private static float seconds(long nanos) {
+        return nanos / 1e9f;
+    }
+
+    /**
+     * @return whether an accelerometer sample arrived since construction or {@link #reset()}
+     */
+    public boolean hasEstimate() {
+        return initialized;
+    }
+
+    /**
+     * @return whether gyroscope samples are being fused
+     */
+    public boolean isGyroActive() {
+        return gyroActive;
+    }
+
+    public float getUpX() {
+        return upX;
+    }
+
+    public float getUpY() {
+        return upY;
+    }
+
+    public float getUpZ() {
+        return upZ;
+    }
+
+    /**
+     * Forgets the estimate, e.g. when listening restarts
+     */
+    public void reset() {
+        initialized = false;
+        gyroActive = false;
+        accelTrusted = false;
+    }
+}
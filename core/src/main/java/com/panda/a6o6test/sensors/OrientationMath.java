@@ -0,0 +1,64 @@
+package com.panda.a6o6test.sensors;
+
+/**
+ * Allocation-free orientation math working directly on the rotation vector quaternion.
+ * <p>
+ * Equivalent to running {@code SensorManager.getRotationMatrixFromVector},
+ * {@code SensorManager.remapCoordinateSystem(AXIS_X, AXIS_Z)} and {@code SensorManager.getOrientation},
+ * but only the three matrix elements needed for pitch and roll are evaluated.
+ * Results match that chain within {@link #TOLERANCE_DEG} as long as the device is not pointing
+ * straight up or down, where roll is undefined in both implementations.
+ */
+public final class OrientationMath {
+
+    /**
+     * Maximum deviation in degrees from the matrix based computation
+     */
+    public static final float TOLERANCE_DEG = 0.01f;
+
+    public static final int PITCH = 0;
+    public static final int ROLL = 1;
+
+    private static final float RAD_TO_DEG = (float) (180.0 / Math.PI);
+
+    private OrientationMath(){}
+
+    /**
+     * Computes pitch and roll as deltas from upright portrait orientation.
+     * Works for both TYPE_ROTATION_VECTOR and TYPE_GAME_ROTATION_VECTOR values.
+     * @param rotationVector x, y, z and optionally w of the unit quaternion as reported by the sensor
+     * @param out receives pitch at {@link #PITCH} and roll at {@link #ROLL}, in degrees
+     */
+    public static void pitchRollFromRotationVector(float[] rotationVector, float[] out) {
+        float x = rotationVector[0];
+        float y = rotationVector[1];
+        float z = rotationVector[2];
+        float w;
+        if(rotationVector.length >= 4){
+            w = rotationVector[3];
+        }else{
+            w = 1 - x * x - y * y - z * z;
+            w = w > 0 ? (float) Math.sqrt(w) : 0;
+        }
+
+        // third row of the rotation matrix, i.e. the world "up" axis in device coordinates
+        float r6 = 2 * x * z - 2 * y * w;
+        float r7 = 2 * y * z + 2 * x * w;
+        float r8 = 1 - 2 * x * x - 2 * y * y;
+
+        pitchRollFromUpVector(r6, r7, r8, out);
+    }
+
+    /**
+     * Computes pitch and roll from the world "up" direction expressed in device coordinates,
+     * e.g. a normalized gravity estimate.
+     * @param out receives pitch at {@link #PITCH} and roll at {@link #ROLL}, in degrees
+     */
+    public static void pitchRollFromUpVector(float upX, float upY, float upZ, float[] out) {
+        // remapping AXIS_X/AXIS_Z swaps the device Y and Z axes (negating the new Y),
+        // so getOrientation's asin(-R[7]) and atan2(-R[6], R[8]) become the expressions below
+        float sinPitch = upZ > 1 ? 1 : (upZ < -1 ? -1 : upZ);
+        out[PITCH] = (float) Math.asin(sinPitch) * -RAD_TO_DEG;
+        out[ROLL] = (float) Math.atan2(-upX, upY) * -RAD_TO_DEG;
+    }
+}
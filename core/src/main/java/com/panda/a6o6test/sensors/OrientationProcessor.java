@@ -0,0 +1,65 @@
+package com.panda.a6o6test.sensors;
+
+/**
+ * Turns rotation vector or gravity samples into pitch, roll and a gated good angle decision.
+ * Allocation-free and confined to the thread delivering the samples.
+ */
+public final class OrientationProcessor {
+
+    private final float[] pitchRoll = new float[2];
+    private final AngleGate angleGate;
+
+    public OrientationProcessor() {
+        this(new AngleGate());
+    }
+
+    public OrientationProcessor(AngleGate angleGate) {
+        this.angleGate = angleGate;
+    }
+
+    /**
+     * @param rotationVector values of a rotation vector event
+     * @param timestampNanos event timestamp
+     * @return whether the angle is good after gating
+     * @see OrientationMath#pitchRollFromRotationVector(float[], float[])
+     */
+    public boolean process(float[] rotationVector, long timestampNanos) {
+        OrientationMath.pitchRollFromRotationVector(rotationVector, pitchRoll);
+        return angleGate.update(pitchRoll[OrientationMath.PITCH], pitchRoll[OrientationMath.ROLL], timestampNanos);
+    }
+
+    /**
+     * @param upX world "up" in device coordinates, e.g. from {@link GravityFilter}
+     * @param timestampNanos sample timestamp
+     * @return whether the angle is good after gating
+     */
+    public boolean processUpVector(float upX, float upY, float upZ, long timestampNanos) {
+        OrientationMath.pitchRollFromUpVector(upX, upY, upZ, pitchRoll);
+        return angleGate.update(pitchRoll[OrientationMath.PITCH], pitchRoll[OrientationMath.ROLL], timestampNanos);
+    }
+
+    /**
+     * @return pitch of the latest sample, in degrees as delta from upright
+     */
+    public float getPitch() {
+        return pitchRoll[OrientationMath.PITCH];
+    }
+
+    /**
+     * @return roll of the latest sample, in degrees as delta from upright
+     */
+    public float getRoll() {
+        return pitchRoll[OrientationMath.ROLL];
+    }
+
+    public AngleGate getAngleGate() {
+        return angleGate;
+    }
+
+    /**
+     * Forgets the gated decision, e.g. when listening restarts
+     */
+    public void reset() {
+        angleGate.reset();
+    }
+}
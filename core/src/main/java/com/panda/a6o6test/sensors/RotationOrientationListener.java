@@ -6,6 +6,7 @@ public interface RotationOrientationListener {
      *
      * @param pitch in degrees as delta from correct upright orientation
      * @param roll in degrees as delta from correct upright orientation
+     * @param timestampNanos SensorEvent timestamp of the sample, elapsed realtime base
      */
-    void onOrientationChanged(float pitch, float roll);
+    void onOrientationChanged(float pitch, float roll, long timestampNanos);
 }
@@ -0,0 +1,39 @@
+package com.panda.a6o6test.sensors;
+
+import com.panda.a6o6test.logic.MainLogicState;
+
+/**
+ * Sensor sampling rate and hardware batching latency used for a given UI state
+ */
+public enum SamplingProfile {
+    /** HUD is animating toward upright, every sample matters: 16ms for roughly 60fps */
+    FULL(16 * 1000, 0),
+    /** Angle is settled, only a tilt away has to be noticed */
+    REDUCED(66 * 1000, 200 * 1000),
+    /** Nothing depends on the angle, samples may sit in the sensor FIFO */
+    BATCHED(200 * 1000, 1000 * 1000);
+
+    public final int samplingPeriodUs;
+    public final int maxReportLatencyUs;
+
+    SamplingProfile(int samplingPeriodUs, int maxReportLatencyUs) {
+        this.samplingPeriodUs = samplingPeriodUs;
+        this.maxReportLatencyUs = maxReportLatencyUs;
+    }
+
+    /**
+     * @return profile appropriate for the state
+     */
+    public static SamplingProfile forState(MainLogicState state) {
+        switch (state) {
+            case IDLE:
+            case BAD_ANGLE:
+            case WAITING_ANGLE:
+                return FULL;
+            case TEST:
+                return BATCHED;
+            default:
+                return REDUCED;
+        }
+    }
+}
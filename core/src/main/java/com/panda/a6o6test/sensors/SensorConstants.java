@@ -0,0 +1,21 @@
+package com.panda.a6o6test.sensors;
+
+public class SensorConstants {
+
+    public static final int PITCH_TOLERANCE_DEG = 20;
+    public static final int ROLL_TOLERANCE_DEG = 20;
+    public static final int UPRIGHT_STABLE_TIME_MILLIS = 3000;
+
+    // an angle has to get this much inside the tolerance to count as good again after being bad
+    public static final int ANGLE_HYSTERESIS_DEG = 3;
+    // a new angle decision has to hold this long before the state machine sees it
+    public static final int ANGLE_MIN_DWELL_MILLIS = 150;
+
+    // default of the low-power orientation setting: fuse accelerometer and gyroscope even when a rotation vector exists
+    public static final boolean LOW_COST_ORIENTATION = false;
+    // how fast the accelerometer corrects gyroscope drift in the fused orientation
+    public static final int GRAVITY_FILTER_TIME_CONSTANT_MILLIS = 500;
+    // accelerations further than this fraction of g from 1 g are motion, not gravity
+    public static final float GRAVITY_FILTER_ACCEL_TOLERANCE = 0.15f;
+
+}
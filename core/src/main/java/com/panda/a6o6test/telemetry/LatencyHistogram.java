@@ -0,0 +1,103 @@
+package com.panda.a6o6test.telemetry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in microseconds with log-linear buckets:
+ * every power of two is split into four buckets, so a percentile is off by at most a quarter of its magnitude.
+ * Values from 0 to about 67 seconds are resolved, larger ones count into the last bucket.
+ * Recording is a couple of atomic increments and never allocates, any thread may record while another reads.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 26;
+    static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos latency, negative values from mismatched clocks count as zero
+     */
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    public void recordMicros(long micros) {
+        if(micros < 0){
+            micros = 0;
+        }
+        counts.incrementAndGet(bucketOf(micros));
+        count.incrementAndGet();
+        long current = max.get();
+        while (micros > current && !max.compareAndSet(current, micros)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * @param fraction between 0 and 1, e.g. 0.99 for p99
+     * @return upper bound of the bucket holding the percentile, capped by the maximum, 0 when empty
+     */
+    public long percentileMicros(double fraction) {
+        long total = count.get();
+        if(total == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if(seen >= rank){
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        // records that landed after count was read
+        return max.get();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxMicros() {
+        return max.get();
+    }
+
+    /**
+     * Clears all counts, records racing with the reset may survive it
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        max.set(0);
+    }
+
+    static int bucketOf(long micros) {
+        if(micros < SUB_BUCKETS){
+            return (int) micros;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+        if(magnitude > MAX_MAGNITUDE){
+            return BUCKET_COUNT - 1;
+        }
+        int sub = (int) (micros >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // largest value falling into the bucket
+    static long upperBoundOf(int bucket) {
+        if(bucket < SUB_BUCKETS){
+            return bucket;
+        }
+        int magnitude = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (magnitude - SUB_BUCKET_BITS)) - 1;
+    }
+}
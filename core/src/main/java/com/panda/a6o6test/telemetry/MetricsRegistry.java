@@ -0,0 +1,161 @@
+package com.panda.a6o6test.telemetry;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, gauges and fixed-bucket histograms describing the app's own behavior, e.g. for a dumpsys export.
+ * Metrics are looked up or created once, typically when their owner is constructed, and kept in a field:
+ * recording is then a striped add and never allocates or contends with other threads.
+ * Gauges are read only while dumping, register them from long-lived objects so they cannot leak a context.
+ */
+public final class MetricsRegistry {
+
+    /**
+     * Monotonic count, the rate is derived from the registry uptime
+     */
+    public static final class Counter {
+        private final LongAdder adder = new LongAdder();
+
+        public void increment() {
+            adder.increment();
+        }
+
+        public void add(long delta) {
+            adder.add(delta);
+        }
+
+        public long get() {
+            return adder.sum();
+        }
+    }
+
+    /**
+     * Counts of values below fixed upper bounds, plus one overflow bucket
+     */
+    public static final class Histogram {
+        private final long[] bounds;
+        private final AtomicLongArray counts;
+        private final LongAdder sum = new LongAdder();
+
+        Histogram(long[] bounds) {
+            for (int i = 1; i < bounds.length; i++) {
+                if(bounds[i] <= bounds[i - 1]){
+                    throw new IllegalArgumentException("bounds must be ascending");
+                }
+            }
+            this.bounds = bounds.clone();
+            this.counts = new AtomicLongArray(bounds.length + 1);
+        }
+
+        public void record(long value) {
+            int bucket = 0;
+            // a handful of buckets, a linear scan beats a binary search
+            while (bucket < bounds.length && value >= bounds[bucket]) {
+                bucket++;
+            }
+            counts.incrementAndGet(bucket);
+            sum.add(value);
+        }
+
+        /**
+         * @return count of values below bounds[bucket] and at least the previous bound, the last bucket is the overflow
+         */
+        public long getCount(int bucket) {
+            return counts.get(bucket);
+        }
+
+        public long getTotalCount() {
+            long total = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                total += counts.get(i);
+            }
+            return total;
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+
+        void dump(PrintWriter writer) {
+            long total = getTotalCount();
+            writer.printf(Locale.US, " count=%d mean=%.1f", total, total > 0 ? getSum() / (double) total : 0d);
+            for (int i = 0; i < counts.length(); i++) {
+                writer.print(i < bounds.length ? " <" + bounds[i] : " >=" + bounds[bounds.length - 1]);
+                writer.print(':');
+                writer.print(counts.get(i));
+            }
+        }
+    }
+
+    private static final MetricsRegistry instance = new MetricsRegistry(System.nanoTime());
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final long startNanos;
+
+    MetricsRegistry(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    public static MetricsRegistry getInstance(){
+        return instance;
+    }
+
+    /**
+     * @return the counter of that name, created on first use
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * Registers or replaces a gauge
+     * @param supplier read on the dumping thread, must be thread safe
+     */
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * @param bounds ascending exclusive upper bounds, only used when the histogram is created
+     * @return the histogram of that name, created on first use
+     */
+    public Histogram histogram(String name, long... bounds) {
+        return histograms.computeIfAbsent(name, key -> new Histogram(bounds));
+    }
+
+    /**
+     * Writes all metrics sorted by name, rates are averaged since the registry was created
+     */
+    public void dump(PrintWriter writer, String prefix) {
+        dump(writer, prefix, System.nanoTime());
+    }
+
+    void dump(PrintWriter writer, String prefix, long nowNanos) {
+        double seconds = Math.max(nowNanos - startNanos, 1) / 1e9;
+        writer.printf(Locale.US, "%sMetrics over %.1f s:%n", prefix, seconds);
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+            long value = entry.getValue().get();
+            writer.printf(Locale.US, "%s  %s=%d (%.2f/s)%n", prefix, entry.getKey(), value, value / seconds);
+        }
+        for (Map.Entry<String, LongSupplier> entry : new TreeMap<>(gauges).entrySet()) {
+            writer.printf(Locale.US, "%s  %s=%d%n", prefix, entry.getKey(), entry.getValue().getAsLong());
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(entry.getKey());
+            entry.getValue().dump(writer);
+            writer.println();
+        }
+        writer.flush();
+    }
+}
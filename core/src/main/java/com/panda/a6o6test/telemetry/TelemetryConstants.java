@@ -0,0 +1,20 @@
+package com.panda.a6o6test.telemetry;
+
+public class TelemetryConstants {
+
+    // record sensor, face and state streams of every camera session to a file
+    public static final boolean TELEMETRY_ENABLED = true;
+    // 32 bytes each, 8 MB per file; at the full sampling rate a session writes about 155 records per second
+    // (62.5 Hz orientation plus as many rotation vectors, 30 Hz face results), so about 28 minutes fit
+    public static final int TELEMETRY_CAPACITY_RECORDS = 1 << 18;
+    // dirty pages are written out at least this often, a crash loses at most this much
+    public static final int TELEMETRY_FORCE_INTERVAL_MILLIS = 5000;
+    public static final String TELEMETRY_DIRECTORY = "telemetry";
+    public static final int TELEMETRY_MAX_FILES = 10;
+
+    // per-stage latency histograms and system trace sections, a few atomic increments per sample
+    public static final boolean LATENCY_TRACING_ENABLED = true;
+    // how often the latency overlay text is rebuilt while shown
+    public static final int LATENCY_OVERLAY_REFRESH_MILLIS = 500;
+
+}
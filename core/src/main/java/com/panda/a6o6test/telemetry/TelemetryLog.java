@@ -0,0 +1,172 @@
+package com.panda.a6o6test.telemetry;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only binary log of fixed size records in a memory mapped ring file.
+ * Any thread may append: a slot is claimed by bumping an atomic cursor and then filled with absolute puts,
+ * so producers never lock or allocate. When the ring is full the oldest records are overwritten.
+ * <p>
+ * File layout, little endian: a {@link #HEADER_SIZE} byte header (magic, version, record size, capacity)
+ * followed by capacity records of {@link #RECORD_SIZE} bytes:
+ * commit (int, sequence + 1, written last), type (int), timestamp (long, nanos), four int payload values.
+ * A slot whose commit does not match its position is empty or was torn by a crash and is skipped by
+ * {@link TelemetryReader}.
+ */
+public final class TelemetryLog implements Closeable {
+
+    public static final int MAGIC = 0x474F4C54; // "TLOG"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int RECORD_SIZE = 32;
+
+    static final int OFFSET_COMMIT = 0;
+    static final int OFFSET_TYPE = 4;
+    static final int OFFSET_TIMESTAMP = 8;
+    static final int OFFSET_PAYLOAD = 16;
+
+    /**
+     * Pitch and roll in degrees as float bits, then the good angle flag
+     */
+    public static final int TYPE_ORIENTATION = 1;
+    /**
+     * Face bounds in active array coordinates
+     */
+    public static final int TYPE_FACE = 2;
+    /**
+     * No face in the capture result
+     */
+    public static final int TYPE_NO_FACE = 3;
+    /**
+     * Ordinals of the previous state, the new state and the event causing the transition
+     */
+    public static final int TYPE_STATE = 4;
+    /**
+     * Raw rotation vector x, y, z and w as float bits, w is NaN when the sensor reports only three values
+     */
+    public static final int TYPE_ROTATION_VECTOR = 5;
+    /**
+     * Frame quality verdict, 1 when good
+     */
+    public static final int TYPE_QUALITY = 6;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final AtomicLong cursor = new AtomicLong();
+
+    private TelemetryLog(RandomAccessFile file, MappedByteBuffer buffer, int capacity) {
+        this.file = file;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates or truncates the file and maps it
+     * @param capacity number of records kept before the oldest get overwritten
+     */
+    public static TelemetryLog create(File path, int capacity) throws IOException {
+        if(capacity < 1){
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+        if(size > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("capacity too large to map");
+        }
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            file.setLength(0);
+            file.setLength(size);
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, RECORD_SIZE);
+            buffer.putInt(12, capacity);
+            return new TelemetryLog(file, buffer, capacity);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a record, safe to call from any thread
+     */
+    public void append(int type, long timestampNanos, int a, int b, int c, int d) {
+        long sequence = cursor.getAndIncrement();
+        int offset = HEADER_SIZE + (int) (sequence % capacity) * RECORD_SIZE;
+        // invalidate first, so an overwritten slot is never read as a mix of old and new values
+        buffer.putInt(offset + OFFSET_COMMIT, 0);
+        buffer.putInt(offset + OFFSET_TYPE, type);
+        buffer.putLong(offset + OFFSET_TIMESTAMP, timestampNanos);
+        buffer.putInt(offset + OFFSET_PAYLOAD, a);
+        buffer.putInt(offset + OFFSET_PAYLOAD + 4, b);
+        buffer.putInt(offset + OFFSET_PAYLOAD + 8, c);
+        buffer.putInt(offset + OFFSET_PAYLOAD + 12, d);
+        buffer.putInt(offset + OFFSET_COMMIT, (int) (sequence + 1));
+    }
+
+    public void appendOrientation(long timestampNanos, float pitch, float roll, boolean good) {
+        append(TYPE_ORIENTATION, timestampNanos, Float.floatToRawIntBits(pitch), Float.floatToRawIntBits(roll), good ? 1 : 0, 0);
+    }
+
+    /**
+     * @param values SensorEvent values of a rotation vector sensor
+     */
+    public void appendRotationVector(long timestampNanos, float[] values) {
+        float w = values.length > 3 ? values[3] : Float.NaN;
+        append(TYPE_ROTATION_VECTOR, timestampNanos, Float.floatToRawIntBits(values[0]), Float.floatToRawIntBits(values[1]),
+                Float.floatToRawIntBits(values[2]), Float.floatToRawIntBits(w));
+    }
+
+    public void appendFace(long timestampNanos, int left, int top, int right, int bottom) {
+        append(TYPE_FACE, timestampNanos, left, top, right, bottom);
+    }
+
+    public void appendNoFace(long timestampNanos) {
+        append(TYPE_NO_FACE, timestampNanos, 0, 0, 0, 0);
+    }
+
+    public void appendState(long timestampNanos, int fromOrdinal, int toOrdinal, int eventOrdinal) {
+        append(TYPE_STATE, timestampNanos, fromOrdinal, toOrdinal, eventOrdinal, 0);
+    }
+
+    public void appendQuality(long timestampNanos, boolean good) {
+        append(TYPE_QUALITY, timestampNanos, good ? 1 : 0, 0, 0, 0);
+    }
+
+    /**
+     * Writes dirty pages to storage. Blocking, keep it off latency sensitive threads.
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    /**
+     * @return records appended so far, including overwritten ones
+     */
+    public long getAppended() {
+        return cursor.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Forces and closes the file. The mapping stays valid, so a late append from another thread is harmless.
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        file.close();
+    }
+}
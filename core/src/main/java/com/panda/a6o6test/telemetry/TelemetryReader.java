@@ -0,0 +1,119 @@
+package com.panda.a6o6test.telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Decodes files written by {@link TelemetryLog}, for offline analysis on the JVM.
+ */
+public final class TelemetryReader {
+
+    /**
+     * A committed record
+     */
+    public static final class Record {
+        public final long sequence;
+        public final int type;
+        public final long timestampNanos;
+        private final int[] payload;
+
+        Record(long sequence, int type, long timestampNanos, int[] payload) {
+            this.sequence = sequence;
+            this.type = type;
+            this.timestampNanos = timestampNanos;
+            this.payload = payload;
+        }
+
+        public int getInt(int index) {
+            return payload[index];
+        }
+
+        public float getFloat(int index) {
+            return Float.intBitsToFloat(payload[index]);
+        }
+
+        @Override
+        public String toString() {
+            switch (type){
+                case TelemetryLog.TYPE_ORIENTATION:
+                    return String.format(Locale.US, "%d %d ORIENTATION pitch=%.2f roll=%.2f good=%b",
+                            sequence, timestampNanos, getFloat(0), getFloat(1), getInt(2) != 0);
+                case TelemetryLog.TYPE_FACE:
+                    return String.format(Locale.US, "%d %d FACE %d,%d,%d,%d",
+                            sequence, timestampNanos, getInt(0), getInt(1), getInt(2), getInt(3));
+                case TelemetryLog.TYPE_NO_FACE:
+                    return String.format(Locale.US, "%d %d NO_FACE", sequence, timestampNanos);
+                case TelemetryLog.TYPE_ROTATION_VECTOR:
+                    return String.format(Locale.US, "%d %d ROTATION_VECTOR %.5f %.5f %.5f %.5f",
+                            sequence, timestampNanos, getFloat(0), getFloat(1), getFloat(2), getFloat(3));
+                case TelemetryLog.TYPE_STATE:
+                    return String.format(Locale.US, "%d %d STATE %d -> %d on %d",
+                            sequence, timestampNanos, getInt(0), getInt(1), getInt(2));
+                case TelemetryLog.TYPE_QUALITY:
+                    return String.format(Locale.US, "%d %d QUALITY good=%b", sequence, timestampNanos, getInt(0) != 0);
+                default:
+                    return String.format(Locale.US, "%d %d TYPE_%d %d %d %d %d",
+                            sequence, timestampNanos, type, getInt(0), getInt(1), getInt(2), getInt(3));
+            }
+        }
+    }
+
+    private TelemetryReader(){}
+
+    /**
+     * @return committed records, oldest first
+     * @throws IOException if the file cannot be read or is not a telemetry log
+     */
+    public static List<Record> read(File path) throws IOException {
+        ByteBuffer buffer;
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            if(file.length() < TelemetryLog.HEADER_SIZE || file.length() > Integer.MAX_VALUE){
+                throw new IOException("Not a telemetry log: " + path);
+            }
+            byte[] bytes = new byte[(int) file.length()];
+            file.readFully(bytes);
+            buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return decode(buffer);
+    }
+
+    /**
+     * @param buffer whole file contents, little endian
+     * @return committed records, oldest first
+     */
+    public static List<Record> decode(ByteBuffer buffer) throws IOException {
+        if(buffer.getInt(0) != TelemetryLog.MAGIC){
+            throw new IOException("Bad magic");
+        }
+        if(buffer.getInt(4) != TelemetryLog.VERSION || buffer.getInt(8) != TelemetryLog.RECORD_SIZE){
+            throw new IOException("Unsupported version " + buffer.getInt(4));
+        }
+        int capacity = buffer.getInt(12);
+        if(capacity < 1 || TelemetryLog.HEADER_SIZE + (long) capacity * TelemetryLog.RECORD_SIZE > buffer.capacity()){
+            throw new IOException("Truncated log");
+        }
+        List<Record> records = new ArrayList<>();
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = TelemetryLog.HEADER_SIZE + slot * TelemetryLog.RECORD_SIZE;
+            long commit = buffer.getInt(offset + TelemetryLog.OFFSET_COMMIT) & 0xFFFFFFFFL;
+            if(commit == 0 || (commit - 1) % capacity != slot){
+                continue;
+            }
+            int[] payload = new int[4];
+            for (int i = 0; i < payload.length; i++) {
+                payload[i] = buffer.getInt(offset + TelemetryLog.OFFSET_PAYLOAD + 4 * i);
+            }
+            records.add(new Record(commit - 1, buffer.getInt(offset + TelemetryLog.OFFSET_TYPE),
+                    buffer.getLong(offset + TelemetryLog.OFFSET_TIMESTAMP), payload));
+        }
+        Collections.sort(records, (first, second) -> Long.compare(first.sequence, second.sequence));
+        return records;
+    }
+}
@@ -0,0 +1,75 @@
+package com.panda.a6o6test.analysis;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+public class FrameDumpAnalyzerTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int ROW_STRIDE = 80;
+    private static final long MS = 1_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void dumpedPlaneReadsBackWithoutRowPadding() throws IOException {
+        File directory = new File(folder.getRoot(), "frames");
+        FrameDumpAnalyzer analyzer = new FrameDumpAnalyzer(directory, 1000, 10);
+
+        analyzer.analyze(frame(5 * MS));
+
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        assertEquals("frame_5000000_64x48.y", files[0].getName());
+        ByteBuffer luma;
+        try (InputStream in = new FileInputStream(files[0])) {
+            luma = FrameDumpAnalyzer.readLuma(in, WIDTH, HEIGHT);
+        }
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                assertEquals(value(row, col), luma.get(row * WIDTH + col));
+            }
+        }
+    }
+
+    @Test
+    public void dumpsAtMostOnePerIntervalUpToTheCap() {
+        File directory = new File(folder.getRoot(), "frames");
+        FrameDumpAnalyzer analyzer = new FrameDumpAnalyzer(directory, 1000, 3);
+
+        for (long t = 0; t < 10_000; t += 100) {
+            analyzer.analyze(frame(t * MS));
+        }
+
+        assertEquals(3, analyzer.getDumped());
+        assertEquals(3, directory.listFiles().length);
+    }
+
+    private static YuvFrame frame(long timestampNanos) {
+        ByteBuffer y = ByteBuffer.allocateDirect(ROW_STRIDE * HEIGHT);
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < ROW_STRIDE; col++) {
+                y.put(row * ROW_STRIDE + col, col < WIDTH ? value(row, col) : (byte) 0xFF);
+            }
+        }
+        YuvFrame frame = new YuvFrame();
+        frame.set(WIDTH, HEIGHT, timestampNanos);
+        frame.setPlane(YuvFrame.Y, y, ROW_STRIDE, 1);
+        return frame;
+    }
+
+    private static byte value(int row, int col) {
+        return (byte) (row * 7 + col * 3);
+    }
+}
@@ -0,0 +1,149 @@
+package com.panda.a6o6test.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class FrameQualityAnalyzerTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int ROW_STRIDE = 704;
+
+    @Test
+    public void texturedMidtoneFrame_isGood() {
+        FrameQualityAnalyzer analyzer = new FrameQualityAnalyzer(null);
+        ByteBuffer frame = texture(new Random(1), 120, 40, false);
+
+        assertTrue(analyzer.measure(frame, ROW_STRIDE, 1, WIDTH, HEIGHT));
+        assertEquals(120, analyzer.getMeanLuma(), 3);
+        assertEquals(0, analyzer.getClippedRatio(), 0.01f);
+    }
+
+    @Test
+    public void darkFrame_isBad() {
+        FrameQualityAnalyzer analyzer = new FrameQualityAnalyzer(null);
+        assertFalse(analyzer.measure(texture(new Random(2), 30, 20, false), ROW_STRIDE, 1, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void backlitFrame_isBadBecauseOfClipping() {
+        FrameQualityAnalyzer analyzer = new FrameQualityAnalyzer(null);
+        ByteBuffer frame = texture(new Random(3), 120, 40, false);
+        // upper half blown out by a window behind the subject
+        for (int row = 0; row < HEIGHT / 2; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                frame.put(row * ROW_STRIDE + col, (byte) 255);
+            }
+        }
+
+        assertFalse(analyzer.measure(frame, ROW_STRIDE, 1, WIDTH, HEIGHT));
+        assertTrue(analyzer.getClippedRatio() > 0.4f);
+    }
+
+    @Test
+    public void blurryFrame_isBadBecauseOfSharpness() {
+        FrameQualityAnalyzer analyzer = new FrameQualityAnalyzer(null);
+        ByteBuffer sharp = texture(new Random(4), 120, 40, false);
+        ByteBuffer blurry = texture(new Random(4), 120, 40, true);
+
+        assertTrue(analyzer.measure(sharp, ROW_STRIDE, 1, WIDTH, HEIGHT));
+        float sharpSharpness = analyzer.getSharpness();
+        assertFalse(analyzer.measure(blurry, ROW_STRIDE, 1, WIDTH, HEIGHT));
+        assertTrue(analyzer.getSharpness() < sharpSharpness / 4);
+    }
+
+    @Test
+    public void verdictChange_isReportedOnlyAfterItHolds() {
+        List<Boolean> reports = new ArrayList<>();
+        FrameQualityAnalyzer analyzer = new FrameQualityAnalyzer(reports::add);
+        YuvFrame good = frame(texture(new Random(5), 120, 40, false));
+        YuvFrame bad = frame(texture(new Random(6), 30, 20, false));
+
+        analyzer.analyze(good);
+        analyzer.analyze(bad);
+        analyzer.analyze(bad);
+        analyzer.analyze(good);
+        analyzer.analyze(bad);
+        analyzer.analyze(bad);
+        assertEquals(1, reports.size());
+        analyzer.analyze(bad);
+        assertEquals(2, reports.size());
+        assertTrue(reports.get(0));
+        assertFalse(reports.get(1));
+        assertFalse(analyzer.isGood());
+
+        analyzer.reset();
+        analyzer.analyze(good);
+        assertEquals(3, reports.size());
+        assertTrue(analyzer.isGood());
+    }
+
+    @Test
+    public void interleavedChromaPixelStride_isRespected() {
+        FrameQualityAnalyzer analyzer = new FrameQualityAnalyzer(null);
+        ByteBuffer interleaved = ByteBuffer.allocate(2 * ROW_STRIDE * HEIGHT);
+        ByteBuffer plain = texture(new Random(7), 120, 40, false);
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                interleaved.put(row * 2 * ROW_STRIDE + 2 * col, plain.get(row * ROW_STRIDE + col));
+                interleaved.put(row * 2 * ROW_STRIDE + 2 * col + 1, (byte) 255);
+            }
+        }
+
+        assertTrue(analyzer.measure(interleaved, 2 * ROW_STRIDE, 2, WIDTH, HEIGHT));
+        assertEquals(0, analyzer.getClippedRatio(), 0.01f);
+    }
+
+    // noise around a mean, optionally box blurred so neighbouring pixels are alike
+    private static ByteBuffer texture(Random random, int mean, int amplitude, boolean blurred) {
+        int[] values = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = mean + random.nextInt(2 * amplitude + 1) - amplitude;
+        }
+        if(blurred){
+            values = boxBlur(values, 6);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(ROW_STRIDE * HEIGHT);
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                buffer.put(row * ROW_STRIDE + col, (byte) Math.max(0, Math.min(255, values[row * WIDTH + col])));
+            }
+        }
+        return buffer;
+    }
+
+    private static int[] boxBlur(int[] values, int radius) {
+        int[] out = new int[values.length];
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                int sum = 0, count = 0;
+                for (int dy = -radius; dy <= radius; dy++) {
+                    for (int dx = -radius; dx <= radius; dx++) {
+                        int r = row + dy, c = col + dx;
+                        if(r >= 0 && r < HEIGHT && c >= 0 && c < WIDTH){
+                            sum += values[r * WIDTH + c];
+                            count++;
+                        }
+                    }
+                }
+                out[row * WIDTH + col] = sum / count;
+            }
+        }
+        return out;
+    }
+
+    private static YuvFrame frame(ByteBuffer y) {
+        YuvFrame frame = new YuvFrame();
+        frame.set(WIDTH, HEIGHT, 0);
+        frame.setPlane(YuvFrame.Y, y, ROW_STRIDE, 1);
+        return frame;
+    }
+}
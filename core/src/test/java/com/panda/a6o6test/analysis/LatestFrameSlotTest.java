@@ -0,0 +1,84 @@
+package com.panda.a6o6test.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatestFrameSlotTest {
+
+    private static final class TestFrame implements AutoCloseable {
+        boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    public void takesNewestAndClosesReplaced() {
+        LatestFrameSlot<TestFrame> slot = new LatestFrameSlot<>();
+        TestFrame first = new TestFrame();
+        TestFrame second = new TestFrame();
+
+        assertFalse(slot.offer(first));
+        assertTrue(slot.offer(second));
+
+        assertTrue(first.closed);
+        assertSame(second, slot.take());
+        assertFalse(second.closed);
+        assertNull(slot.take());
+        assertEquals(1, slot.getDropped());
+    }
+
+    @Test
+    public void clear_closesWaitingFrame() {
+        LatestFrameSlot<TestFrame> slot = new LatestFrameSlot<>();
+        TestFrame frame = new TestFrame();
+        slot.offer(frame);
+
+        slot.clear();
+
+        assertTrue(frame.closed);
+        assertNull(slot.take());
+    }
+
+    @Test
+    public void concurrentProducer_everyFrameIsTakenOrClosedExactlyOnce() throws InterruptedException {
+        final int count = 100_000;
+        LatestFrameSlot<TestFrame> slot = new LatestFrameSlot<>();
+        TestFrame[] frames = new TestFrame[count];
+        for (int i = 0; i < count; i++) {
+            frames[i] = new TestFrame();
+        }
+        Thread producer = new Thread(() -> {
+            for (TestFrame frame : frames) {
+                slot.offer(frame);
+            }
+        });
+        long taken = 0;
+        producer.start();
+        while(producer.isAlive()){
+            if(slot.take() != null){
+                taken++;
+            }
+        }
+        producer.join();
+        if(slot.take() != null){
+            taken++;
+        }
+
+        long closed = 0;
+        for (TestFrame frame : frames) {
+            if(frame.closed){
+                closed++;
+            }
+        }
+        assertEquals(count, taken + closed);
+        assertEquals(closed, slot.getDropped());
+    }
+}
@@ -0,0 +1,159 @@
+package com.panda.a6o6test.analysis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+public class LumaFaceDetectorTest {
+
+    private static final int WIDTH = 60;
+    private static final int HEIGHT = 80;
+
+    @Test
+    public void syntheticFace_isFoundAtItsPosition() {
+        int[] luma = background(new Random(1));
+        drawFace(luma, WIDTH, 14, 30, 32);
+        LumaFaceDetector detector = new LumaFaceDetector(WIDTH, HEIGHT, 16);
+        int[] bounds = new int[4];
+
+        assertTrue(detector.detect(luma, bounds));
+        assertCenteredOn(bounds, 14 + 16, 30 + 16, 5);
+        assertTrue(bounds[2] - bounds[0] >= 20 && bounds[2] - bounds[0] <= 44);
+    }
+
+    @Test
+    public void faceFound_regardlessOfExposure() {
+        int[] luma = background(new Random(2));
+        drawFace(luma, WIDTH, 10, 10, 40);
+        for (int i = 0; i < luma.length; i++) {
+            luma[i] = luma[i] / 3;
+        }
+        int[] bounds = new int[4];
+
+        assertTrue(new LumaFaceDetector(WIDTH, HEIGHT, 16).detect(luma, bounds));
+        assertCenteredOn(bounds, 30, 30, 6);
+    }
+
+    @Test
+    public void flatAndNoisyFrames_haveNoFace() {
+        LumaFaceDetector detector = new LumaFaceDetector(WIDTH, HEIGHT, 16);
+        int[] bounds = new int[4];
+
+        int[] flat = new int[WIDTH * HEIGHT];
+        java.util.Arrays.fill(flat, 128);
+        assertFalse(detector.detect(flat, bounds));
+
+        Random random = new Random(3);
+        int[] noise = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = random.nextInt(256);
+        }
+        assertFalse(detector.detect(noise, bounds));
+        assertEquals(0, detector.getLastScore(), 0);
+    }
+
+    @Test
+    public void singleDarkBlob_isRejected() {
+        int[] luma = background(new Random(4));
+        for (int y = 30; y < 62; y++) {
+            for (int x = 14; x < 46; x++) {
+                boolean blob = Math.abs(x - 22) < 4 && Math.abs(y - 42) < 3;
+                luma[y * WIDTH + x] = blob ? 50 : 180;
+            }
+        }
+
+        assertFalse(new LumaFaceDetector(WIDTH, HEIGHT, 16).detect(luma, new int[4]));
+    }
+
+    @Test
+    public void landscapeSensorFrame_isRotatedUprightAndMappedBack() {
+        // upright 240x320 scene, stored the way a 270 degree sensor delivers it: 320x240 landscape
+        int sceneWidth = 240, sceneHeight = 320;
+        int[] scene = new int[sceneWidth * sceneHeight];
+        java.util.Arrays.fill(scene, 90);
+        drawFace(scene, sceneWidth, 60, 120, 120);
+        int srcWidth = sceneHeight, srcHeight = sceneWidth;
+        int rowStride = srcWidth + 16;
+        ByteBuffer plane = ByteBuffer.allocateDirect(rowStride * srcHeight);
+        for (int y = 0; y < sceneHeight; y++) {
+            for (int x = 0; x < sceneWidth; x++) {
+                // turning the sensor image 270 degrees clockwise makes it upright
+                int sx = sceneHeight - 1 - y;
+                int sy = x;
+                plane.put(sy * rowStride + sx, (byte) scene[y * sceneWidth + x]);
+            }
+        }
+
+        int[] small = new int[WIDTH * HEIGHT];
+        LumaDownscaler.downscale(plane, rowStride, 1, srcWidth, srcHeight, 270, small, WIDTH, HEIGHT);
+        int[] bounds = new int[4];
+        assertTrue(new LumaFaceDetector(WIDTH, HEIGHT, 16).detect(small, bounds));
+
+        int[] sensor = new int[4];
+        LumaDownscaler.mapToSource(bounds[0], bounds[1], bounds[2], bounds[3], WIDTH, HEIGHT, 270, 4000, 3000, sensor);
+        // the face spans scene x 60..180 and y 120..240, i.e. sensor x 80..200 and y 60..180 of 320x240
+        assertCenteredOn(sensor, 140 * 4000 / 320, 120 * 3000 / 240, 250);
+    }
+
+    @Test
+    public void mapToSource_invertsEveryRotation() {
+        int[] out = new int[4];
+        LumaDownscaler.mapToSource(0, 0, 30, 20, 60, 80, 0, 600, 800, out);
+        assertArrayEquals(new int[]{0, 0, 300, 200}, out);
+        LumaDownscaler.mapToSource(0, 0, 30, 20, 60, 80, 90, 800, 600, out);
+        assertArrayEquals(new int[]{0, 300, 200, 600}, out);
+        LumaDownscaler.mapToSource(0, 0, 30, 20, 60, 80, 180, 600, 800, out);
+        assertArrayEquals(new int[]{300, 600, 600, 800}, out);
+        LumaDownscaler.mapToSource(0, 0, 30, 20, 60, 80, 270, 800, 600, out);
+        assertArrayEquals(new int[]{600, 0, 800, 300}, out);
+    }
+
+    private static int[] background(Random random) {
+        int[] luma = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < luma.length; i++) {
+            luma[i] = 80 + random.nextInt(20);
+        }
+        return luma;
+    }
+
+    // bright oval with dark eyes and mouth inside the square at (left, top) of the given size
+    private static void drawFace(int[] luma, int stride, int left, int top, int size) {
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                float u = (x + 0.5f) / size;
+                float v = (y + 0.5f) / size;
+                int value;
+                if(inEllipse(u, v, 0.5f, 0.5f, 0.42f, 0.5f)){
+                    value = 180;
+                    if(inEllipse(u, v, 0.28f, 0.35f, 0.1f, 0.06f) || inEllipse(u, v, 0.72f, 0.35f, 0.1f, 0.06f)){
+                        value = 50;
+                    }else if(inEllipse(u, v, 0.5f, 0.8f, 0.15f, 0.04f)){
+                        value = 90;
+                    }
+                }else{
+                    continue;
+                }
+                luma[(top + y) * stride + left + x] = value;
+            }
+        }
+    }
+
+    private static boolean inEllipse(float u, float v, float cu, float cv, float ru, float rv) {
+        float du = (u - cu) / ru;
+        float dv = (v - cv) / rv;
+        return du * du + dv * dv <= 1;
+    }
+
+    private static void assertCenteredOn(int[] bounds, int x, int y, int tolerance) {
+        int cx = (bounds[0] + bounds[2]) / 2;
+        int cy = (bounds[1] + bounds[3]) / 2;
+        assertTrue("center " + cx + "," + cy + " expected near " + x + "," + y,
+                Math.abs(cx - x) <= tolerance && Math.abs(cy - y) <= tolerance);
+    }
+}
@@ -0,0 +1,59 @@
+package com.panda.a6o6test.camera;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FacePresenceTrackerTest {
+
+    @Test
+    public void singleDroppedDetection_doesNotProduceEdge() {
+        FacePresenceTracker tracker = new FacePresenceTracker(3, 5);
+        assertEquals(FacePresenceTracker.EDGE_NONE, tracker.update(true, 0, 0, 10, 10));
+        assertEquals(FacePresenceTracker.EDGE_NONE, tracker.update(true, 0, 0, 10, 10));
+        assertEquals(FacePresenceTracker.EDGE_APPEARED, tracker.update(true, 0, 0, 10, 10));
+
+        assertEquals(FacePresenceTracker.EDGE_NONE, tracker.update(false, 0, 0, 0, 0));
+        assertEquals(FacePresenceTracker.EDGE_NONE, tracker.update(true, 0, 0, 10, 10));
+        assertEquals(FacePresenceTracker.EDGE_NONE, tracker.update(false, 0, 0, 0, 0));
+        assertTrue(tracker.isPresent());
+        assertEquals(1, tracker.getEdges());
+    }
+
+    @Test
+    public void sustainedAbsence_producesSingleDisappearedEdge() {
+        FacePresenceTracker tracker = new FacePresenceTracker(3, 5);
+        for (int i = 0; i < 5; i++) {
+            tracker.update(true, 0, 0, 10, 10);
+        }
+        int disappeared = 0;
+        for (int i = 0; i < 20; i++) {
+            if (tracker.update(false, 0, 0, 0, 0) == FacePresenceTracker.EDGE_DISAPPEARED) {
+                disappeared++;
+            }
+        }
+        assertEquals(1, disappeared);
+        assertFalse(tracker.isPresent());
+    }
+
+    @Test
+    public void boundsAreAveragedOverDetectionsInWindow() {
+        FacePresenceTracker tracker = new FacePresenceTracker(1, 3);
+        int[] out = new int[4];
+        assertFalse(tracker.getSmoothedBounds(out));
+
+        tracker.update(true, 0, 0, 10, 10);
+        tracker.update(false, 0, 0, 0, 0);
+        tracker.update(true, 10, 20, 30, 40);
+        assertTrue(tracker.getSmoothedBounds(out));
+        assertArrayEquals(new int[]{5, 10, 20, 25}, out);
+
+        // the first detection leaves the window
+        tracker.update(true, 10, 20, 30, 40);
+        tracker.getSmoothedBounds(out);
+        assertArrayEquals(new int[]{10, 20, 30, 40}, out);
+    }
+}
@@ -0,0 +1,59 @@
+package com.panda.a6o6test.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FaceResultSlotTest {
+
+    @Test
+    public void readerSeesOnlyNewestResult() {
+        FaceResultSlot slot = new FaceResultSlot();
+        assertFalse(slot.latest().present);
+
+        for (int i = 1; i <= 3; i++) {
+            FaceResultSlot.FaceSample sample = slot.beginWrite();
+            sample.present = true;
+            sample.left = i;
+            slot.publish();
+        }
+
+        assertEquals(3, slot.latest().left);
+        assertEquals(3, slot.latest().left);
+        assertEquals(2, slot.getOverwritten());
+    }
+
+    @Test(timeout = 30_000)
+    public void concurrentReader_neverSeesTornOrOlderSamples() throws Exception {
+        FaceResultSlot slot = new FaceResultSlot();
+        final int writes = 2_000_000;
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= writes; i++) {
+                FaceResultSlot.FaceSample sample = slot.beginWrite();
+                sample.present = true;
+                sample.left = i;
+                sample.top = i;
+                sample.right = i;
+                sample.bottom = i;
+                slot.publish();
+            }
+        });
+        writer.start();
+
+        int last = 0;
+        while (last < writes) {
+            FaceResultSlot.FaceSample sample = slot.latest();
+            if (!sample.present) {
+                continue;
+            }
+            assertTrue(sample.left >= last);
+            assertEquals(sample.left, sample.top);
+            assertEquals(sample.left, sample.right);
+            assertEquals(sample.left, sample.bottom);
+            last = sample.left;
+        }
+        writer.join();
+    }
+}
@@ -0,0 +1,67 @@
+package com.panda.a6o6test.camera;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class PreviewSizeSelectorTest {
+
+    private static final int[] WIDTHS = {4000, 1920, 1440, 1280, 1024, 640, 320};
+    private static final int[] HEIGHTS = {3000, 1080, 1080, 960, 768, 480, 240};
+
+    @Test
+    public void portraitView_picksSmallestCovering4by3InSensorOrientation() {
+        // 810x1080 portrait view on a 270 degree sensor needs at least 1080x810 landscape buffers
+        int index = PreviewSizeSelector.chooseSize(WIDTHS, HEIGHTS, 810, 1080, 270);
+        assertEquals(1280, WIDTHS[index]);
+        assertEquals(960, HEIGHTS[index]);
+    }
+
+    @Test
+    public void exactSize_isPreferred() {
+        int index = PreviewSizeSelector.chooseSize(WIDTHS, HEIGHTS, 1080, 1440, 90);
+        assertEquals(1440, WIDTHS[index]);
+    }
+
+    @Test
+    public void wideSizes_areSkipped() {
+        // 1920x1080 is large enough but 16:9
+        int index = PreviewSizeSelector.chooseSize(WIDTHS, HEIGHTS, 1200, 1600, 270);
+        assertEquals(4000, WIDTHS[index]);
+    }
+
+    @Test
+    public void viewLargerThanAnySize_fallsBackToLargestMatchingAspect() {
+        int index = PreviewSizeSelector.chooseSize(WIDTHS, HEIGHTS, 6000, 8000, 270);
+        assertEquals(4000, WIDTHS[index]);
+    }
+
+    @Test
+    public void noMatchingAspect_fallsBackToSmallestCovering() {
+        int[] widths = {1920, 1280, 640};
+        int[] heights = {1080, 720, 360};
+        int index = PreviewSizeSelector.chooseSize(widths, heights, 600, 800, 270);
+        assertEquals(1280, widths[index]);
+    }
+
+    @Test
+    public void unknownViewSize_choosesNothing() {
+        assertEquals(-1, PreviewSizeSelector.chooseSize(WIDTHS, HEIGHTS, 0, 0, 270));
+        assertEquals(-1, PreviewSizeSelector.chooseSize(new int[0], new int[0], 720, 960, 270));
+    }
+
+    @Test
+    public void fpsRange_prefersExactUpperWithLowestLower() {
+        int[] lowers = {15, 7, 30, 24};
+        int[] uppers = {30, 30, 30, 24};
+        assertEquals(1, PreviewSizeSelector.chooseFpsRange(lowers, uppers, 30));
+    }
+
+    @Test
+    public void fpsRange_withoutExactUpper_takesTightestContainingRange() {
+        int[] lowers = {15, 10, 60};
+        int[] uppers = {60, 40, 60};
+        assertEquals(1, PreviewSizeSelector.chooseFpsRange(lowers, uppers, 30));
+        assertEquals(-1, PreviewSizeSelector.chooseFpsRange(new int[]{60}, new int[]{120}, 30));
+    }
+}
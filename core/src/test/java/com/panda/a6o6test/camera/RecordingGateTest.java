@@ -0,0 +1,82 @@
+package com.panda.a6o6test.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RecordingGateTest {
+
+    @Test
+    public void targetedOnlyBetweenStartAndLeavingTest() {
+        RecordingGate gate = new RecordingGate();
+        assertFalse(gate.setWanted(true));
+        assertFalse(gate.isTargeted());
+
+        assertTrue(gate.onStarted());
+        assertTrue(gate.isTargeted());
+
+        assertTrue(gate.setWanted(false));
+        assertFalse(gate.isTargeted());
+    }
+
+    @Test
+    public void startAfterLeavingTest_isNotTargeted() {
+        RecordingGate gate = new RecordingGate();
+        gate.setWanted(true);
+        gate.setWanted(false);
+
+        assertFalse(gate.onStarted());
+        assertFalse(gate.isTargeted());
+    }
+
+    @Test
+    public void encoderErrorDuringTest_untargetsSurface() {
+        RecordingGate gate = new RecordingGate();
+        gate.setWanted(true);
+        gate.onStarted();
+
+        assertTrue(gate.onFailed());
+
+        assertFalse(gate.isTargeted());
+        assertEquals(1, gate.getFailures());
+        // leaving TEST afterwards has nothing left to untarget
+        assertFalse(gate.setWanted(false));
+    }
+
+    @Test
+    public void failedStart_needsNoNewRequest() {
+        RecordingGate gate = new RecordingGate();
+        gate.setWanted(true);
+
+        assertFalse(gate.onFailed());
+        assertEquals(1, gate.getFailures());
+    }
+
+    @Test
+    public void limitReachedDuringTest_untargetsUntilTestIsLeft() {
+        RecordingGate gate = new RecordingGate();
+        gate.setWanted(true);
+        gate.onStarted();
+
+        assertTrue(gate.onLimitReached());
+
+        assertFalse(gate.isTargeted());
+        assertEquals(0, gate.getFailures());
+        assertFalse(gate.setWanted(false));
+        assertFalse(gate.onLimitReached());
+    }
+
+    @Test
+    public void resetForgetsTarget() {
+        RecordingGate gate = new RecordingGate();
+        gate.setWanted(true);
+        gate.onStarted();
+
+        gate.reset();
+
+        assertFalse(gate.isTargeted());
+        assertFalse(gate.onStarted());
+    }
+}
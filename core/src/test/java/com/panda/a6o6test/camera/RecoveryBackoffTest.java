@@ -0,0 +1,61 @@
+package com.panda.a6o6test.camera;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class RecoveryBackoffTest {
+
+    @Test
+    public void delayDoublesUpToCapThenGivesUp() {
+        RecoveryBackoff backoff = new RecoveryBackoff(250, 1500, 5);
+
+        assertEquals(250, backoff.nextDelayMillis());
+        assertEquals(500, backoff.nextDelayMillis());
+        assertEquals(1000, backoff.nextDelayMillis());
+        assertEquals(1500, backoff.nextDelayMillis());
+        assertEquals(1500, backoff.nextDelayMillis());
+        assertEquals(-1, backoff.nextDelayMillis());
+        assertEquals(5, backoff.getAttempts());
+    }
+
+    @Test
+    public void resetStartsOver() {
+        RecoveryBackoff backoff = new RecoveryBackoff(100, 800, 2);
+        backoff.nextDelayMillis();
+        backoff.nextDelayMillis();
+
+        backoff.reset();
+
+        assertEquals(0, backoff.getAttempts());
+        assertEquals(100, backoff.nextDelayMillis());
+    }
+
+    @Test
+    public void manyAttempts_doNotOverflow() {
+        RecoveryBackoff backoff = new RecoveryBackoff(250, 8000, 100);
+        for (int i = 0; i < 99; i++) {
+            backoff.nextDelayMillis();
+        }
+        assertEquals(8000, backoff.nextDelayMillis());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capBelowInitialDelay_isRejected() {
+        new RecoveryBackoff(500, 100, 3);
+    }
+
+    @Test
+    public void recoveryStats_averageLatency() {
+        RecoveryStats stats = new RecoveryStats();
+        stats.recordFailure();
+        stats.recordRecovery(300);
+        stats.recordFailure();
+        stats.recordRecovery(900);
+
+        assertEquals(2, stats.getRecoveries());
+        assertEquals(600, stats.getAverageLatencyMillis());
+        assertEquals(900, stats.getMaxLatencyMillis());
+        assertEquals(900, stats.getLastLatencyMillis());
+    }
+}
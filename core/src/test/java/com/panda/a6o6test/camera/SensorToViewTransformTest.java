@@ -0,0 +1,48 @@
+package com.panda.a6o6test.camera;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SensorToViewTransformTest {
+
+    @Test
+    public void frontCamera270_mapsSensorCornersToMirroredPortraitView() {
+        SensorToViewTransform transform = new SensorToViewTransform();
+        transform.setSensorGeometry(4000, 3000, 270, true);
+        transform.setViewSize(1080, 1440);
+        float[] out = new float[4];
+
+        // top-left quarter of the landscape sensor ends up in the bottom-right of the mirrored portrait view
+        transform.mapRect(0, 0, 2000, 1500, out);
+        assertArrayEquals(new float[]{540, 720, 1080, 1440}, out, 0.01f);
+
+        transform.mapRect(0, 0, 4000, 3000, out);
+        assertArrayEquals(new float[]{0, 0, 1080, 1440}, out, 0.01f);
+    }
+
+    @Test
+    public void backCamera90_isNotMirrored() {
+        SensorToViewTransform transform = new SensorToViewTransform();
+        transform.setSensorGeometry(4000, 3000, 90, false);
+        transform.setViewSize(1080, 1440);
+        float[] out = new float[4];
+
+        // sensor top-left goes to the view top-right
+        transform.mapRect(0, 0, 2000, 1500, out);
+        assertArrayEquals(new float[]{540, 0, 1080, 720}, out, 0.01f);
+    }
+
+    @Test
+    public void rebuildsOnlyOnChange() {
+        SensorToViewTransform transform = new SensorToViewTransform();
+        assertTrue(transform.setSensorGeometry(4000, 3000, 270, true));
+        assertFalse(transform.isValid());
+        assertTrue(transform.setViewSize(1080, 1440));
+        assertTrue(transform.isValid());
+        assertFalse(transform.setSensorGeometry(4000, 3000, 270, true));
+        assertFalse(transform.setViewSize(1080, 1440));
+    }
+}
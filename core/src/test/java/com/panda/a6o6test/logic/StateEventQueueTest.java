@@ -0,0 +1,111 @@
+package com.panda.a6o6test.logic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StateEventQueueTest {
+
+    private static final int PRODUCERS = 6;
+    private static final int EVENTS_PER_PRODUCER = 200_000;
+
+    @Test
+    public void rejectsOfferWhenFull_andAcceptsAgainAfterDrain() {
+        StateEventQueue queue = new StateEventQueue(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+
+        List<Integer> drained = new ArrayList<>();
+        StateEventQueue.Consumer consumer = (event, stamp) -> drained.add(event);
+        assertEquals(2, queue.drain(consumer, 2));
+        assertTrue(queue.offer(4));
+        assertEquals(3, queue.drain(consumer, Integer.MAX_VALUE));
+
+        assertEquals(5, drained.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, (int) drained.get(i));
+        }
+    }
+
+    @Test
+    public void stampTravelsWithItsOwnEntry() {
+        StateEventQueue queue = new StateEventQueue(4);
+        queue.offer(7, 100);
+        queue.offer(8, 200);
+        queue.offer(7, 300);
+
+        List<Long> stamps = new ArrayList<>();
+        queue.drain((event, stamp) -> stamps.add(event * 1000L + stamp), Integer.MAX_VALUE);
+
+        assertEquals(7100L, (long) stamps.get(0));
+        assertEquals(8200L, (long) stamps.get(1));
+        assertEquals(7300L, (long) stamps.get(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPowerOfTwoCapacity() {
+        new StateEventQueue(100);
+    }
+
+    @Test(timeout = 60_000)
+    public void concurrentProducers_deliverEveryEventOnceAndInPerProducerOrder() throws Exception {
+        StateEventQueue queue = new StateEventQueue(256);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger fullRetries = new AtomicInteger();
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < EVENTS_PER_PRODUCER; i++) {
+                    int event = producer << 24 | i;
+                    while (!queue.offer(event)) {
+                        fullRetries.incrementAndGet();
+                        Thread.yield();
+                    }
+                }
+            });
+            thread.start();
+            producers.add(thread);
+        }
+
+        int[] nextExpected = new int[PRODUCERS];
+        int[] received = new int[1];
+        StateEventQueue.Consumer consumer = (event, stamp) -> {
+            int producer = event >>> 24;
+            int sequence = event & 0xFFFFFF;
+            assertEquals("out of order for producer " + producer, nextExpected[producer], sequence);
+            nextExpected[producer]++;
+            received[0]++;
+        };
+
+        start.countDown();
+        int total = PRODUCERS * EVENTS_PER_PRODUCER;
+        while (received[0] < total) {
+            if (queue.drain(consumer, 64) == 0) {
+                Thread.yield();
+            }
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertEquals(0, queue.drain(consumer, Integer.MAX_VALUE));
+        for (int p = 0; p < PRODUCERS; p++) {
+            assertEquals(EVENTS_PER_PRODUCER, nextExpected[p]);
+        }
+    }
+}
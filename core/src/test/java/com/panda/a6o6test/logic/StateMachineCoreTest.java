@@ -0,0 +1,140 @@
+package com.panda.a6o6test.logic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.panda.a6o6test.sensors.SensorConstants;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StateMachineCoreTest {
+
+    private final List<MainLogicState> entered = new ArrayList<>();
+    private long scheduledMillis = -1;
+    private StateMachineCore core;
+
+    @Before
+    public void setUp() {
+        StateMachineCore.Timer timer = new StateMachineCore.Timer() {
+            @Override
+            public void schedule(long delayMillis) {
+                scheduledMillis = delayMillis;
+            }
+
+            @Override
+            public void cancel() {
+                scheduledMillis = -1;
+            }
+        };
+        core = new StateMachineCore(TransitionTable.getDefault(), timer, (from, to, event) -> entered.add(to));
+    }
+
+    private void apply(StateEvent... events) {
+        for (StateEvent event : events) {
+            core.apply(event);
+        }
+    }
+
+    @Test
+    public void uprightAngleSchedulesConfirmationOnlyWhileResumed() {
+        apply(StateEvent.IDLE, StateEvent.BAD_ANGLE, StateEvent.GOOD_ANGLE);
+        assertEquals(MainLogicState.WAITING_ANGLE, core.getState());
+        assertEquals(-1, scheduledMillis);
+
+        apply(StateEvent.RESUME, StateEvent.BAD_ANGLE, StateEvent.GOOD_ANGLE);
+        assertEquals(SensorConstants.UPRIGHT_STABLE_TIME_MILLIS, scheduledMillis);
+        apply(StateEvent.BAD_ANGLE);
+        assertEquals(-1, scheduledMillis);
+    }
+
+    @Test
+    public void faceDuringBadQualityWaitsForRecovery() {
+        apply(StateEvent.RESUME, StateEvent.IDLE, StateEvent.BAD_ANGLE, StateEvent.GOOD_ANGLE,
+                StateEvent.CONFIRM_ANGLE, StateEvent.NO_FACE_FROM_BUTTON, StateEvent.QUALITY_BAD, StateEvent.ALL_GO);
+        assertEquals(MainLogicState.NO_FACE, core.getState());
+        apply(StateEvent.QUALITY_OK);
+        assertEquals(MainLogicState.ALL_GO, core.getState());
+    }
+
+    @Test
+    public void badQualityDemotesAllGoUntilItRecovers() {
+        apply(StateEvent.IDLE, StateEvent.BAD_ANGLE, StateEvent.GOOD_ANGLE, StateEvent.CONFIRM_ANGLE,
+                StateEvent.NO_FACE_FROM_BUTTON, StateEvent.ALL_GO, StateEvent.QUALITY_BAD);
+        assertEquals(MainLogicState.NO_FACE, core.getState());
+        apply(StateEvent.QUALITY_OK);
+        assertEquals(MainLogicState.ALL_GO, core.getState());
+    }
+
+    @Test
+    public void lostFaceCancelsPendingAllGo() {
+        apply(StateEvent.IDLE, StateEvent.BAD_ANGLE, StateEvent.GOOD_ANGLE, StateEvent.CONFIRM_ANGLE,
+                StateEvent.NO_FACE_FROM_BUTTON, StateEvent.ALL_GO, StateEvent.QUALITY_BAD,
+                StateEvent.NO_FACE_FROM_DETECTION, StateEvent.QUALITY_OK);
+        assertEquals(MainLogicState.NO_FACE, core.getState());
+    }
+
+    @Test
+    public void faceAlreadyInFrameGoesAllGoOnButton() {
+        apply(StateEvent.IDLE, StateEvent.BAD_ANGLE, StateEvent.GOOD_ANGLE, StateEvent.ALL_GO, StateEvent.CONFIRM_ANGLE);
+        assertEquals(MainLogicState.CONFIRMED_ANGLE, core.getState());
+        apply(StateEvent.NO_FACE_FROM_BUTTON);
+        assertEquals(MainLogicState.ALL_GO, core.getState());
+        assertEquals(MainLogicState.NO_FACE, entered.get(entered.size() - 2));
+    }
+
+    @Test
+    public void faceGoneBeforeButtonWaitsInNoFace() {
+        apply(StateEvent.IDLE, StateEvent.BAD_ANGLE, StateEvent.GOOD_ANGLE, StateEvent.ALL_GO, StateEvent.CONFIRM_ANGLE,
+                StateEvent.NO_FACE_FROM_DETECTION, StateEvent.NO_FACE_FROM_BUTTON);
+        assertEquals(MainLogicState.NO_FACE, core.getState());
+    }
+
+    @Test
+    public void faceInFrameDuringBadQualityWaitsForRecovery() {
+        apply(StateEvent.IDLE, StateEvent.BAD_ANGLE, StateEvent.GOOD_ANGLE, StateEvent.ALL_GO, StateEvent.QUALITY_BAD,
+                StateEvent.CONFIRM_ANGLE, StateEvent.NO_FACE_FROM_BUTTON);
+        assertEquals(MainLogicState.NO_FACE, core.getState());
+        apply(StateEvent.QUALITY_OK);
+        assertEquals(MainLogicState.ALL_GO, core.getState());
+    }
+
+    @Test
+    public void pauseForgetsFace() {
+        apply(StateEvent.IDLE, StateEvent.BAD_ANGLE, StateEvent.GOOD_ANGLE, StateEvent.ALL_GO, StateEvent.PAUSE,
+                StateEvent.RESUME, StateEvent.CONFIRM_ANGLE, StateEvent.NO_FACE_FROM_BUTTON);
+        assertEquals(MainLogicState.NO_FACE, core.getState());
+    }
+
+    @Test
+    public void badAngleDecidedBeforeIdleAppliesOnEnteringIdle() {
+        apply(StateEvent.BAD_ANGLE, StateEvent.IDLE);
+        assertEquals(MainLogicState.BAD_ANGLE, core.getState());
+    }
+
+    @Test
+    public void badAngleDuringErrorAppliesOnRecovery() {
+        apply(StateEvent.IDLE, StateEvent.BAD_ANGLE, StateEvent.GOOD_ANGLE, StateEvent.CONFIRM_ANGLE,
+                StateEvent.ERROR, StateEvent.BAD_ANGLE, StateEvent.IDLE);
+        assertEquals(MainLogicState.BAD_ANGLE, core.getState());
+    }
+
+    @Test
+    public void pauseForgetsAngle() {
+        apply(StateEvent.BAD_ANGLE, StateEvent.PAUSE, StateEvent.IDLE);
+        assertEquals(MainLogicState.IDLE, core.getState());
+    }
+
+    @Test
+    public void listenerSeesOnlyRealTransitions() {
+        apply(StateEvent.GOOD_ANGLE, StateEvent.IDLE, StateEvent.IDLE, StateEvent.TEST);
+        assertEquals(1, entered.size());
+        assertEquals(MainLogicState.IDLE, entered.get(0));
+        assertFalse(entered.contains(MainLogicState.TEST));
+        assertTrue(TransitionTable.getDefault().isAllowed(MainLogicState.IDLE, StateEvent.BAD_ANGLE));
+    }
+}
@@ -0,0 +1,62 @@
+package com.panda.a6o6test.logic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.panda.a6o6test.logic.MainLogicState;
+
+import org.junit.Test;
+
+public class TransitionTableTest {
+
+    private final TransitionTable table = TransitionTable.getDefault();
+
+    @Test
+    public void everyStateIsReachableFromInitialState() {
+        assertTrue(table.dump(), table.unreachableFrom(MainLogicState.NO_PERMISSION).isEmpty());
+    }
+
+    @Test
+    public void happyPathLeadsToTest() {
+        MainLogicState state = MainLogicState.NO_PERMISSION;
+        StateEvent[] path = {StateEvent.IDLE, StateEvent.BAD_ANGLE, StateEvent.GOOD_ANGLE, StateEvent.CONFIRM_ANGLE,
+                StateEvent.NO_FACE_FROM_BUTTON, StateEvent.ALL_GO, StateEvent.TEST};
+        for (StateEvent event : path) {
+            state = table.next(state, event);
+        }
+        assertEquals(MainLogicState.TEST, state);
+    }
+
+    @Test
+    public void ignoresEventsOutsideOfTheirSourceStates() {
+        assertNull(table.next(MainLogicState.IDLE, StateEvent.GOOD_ANGLE));
+        assertNull(table.next(MainLogicState.TEST, StateEvent.NO_PERMISSION));
+        assertNull(table.next(MainLogicState.TEST, StateEvent.BAD_ANGLE));
+        assertFalse(table.isAllowed(MainLogicState.NO_FACE, StateEvent.TEST));
+        assertEquals(MainLogicState.ERROR, table.next(MainLogicState.TEST, StateEvent.ERROR));
+    }
+
+    @Test
+    public void badQualityOnlyLeavesAllGo() {
+        assertEquals(MainLogicState.NO_FACE, table.next(MainLogicState.ALL_GO, StateEvent.QUALITY_BAD));
+        assertNull(table.next(MainLogicState.TEST, StateEvent.QUALITY_BAD));
+        for (MainLogicState state : MainLogicState.values()) {
+            assertNull(table.next(state, StateEvent.QUALITY_OK));
+        }
+    }
+
+    @Test
+    public void lifecycleEventsAreNotTransitions() {
+        for (MainLogicState state : MainLogicState.values()) {
+            assertNull(table.next(state, StateEvent.PAUSE));
+            assertNull(table.next(state, StateEvent.RESUME));
+        }
+    }
+
+    @Test
+    public void dumpListsEdges() {
+        assertTrue(table.dump().contains("WAITING_ANGLE --CONFIRM_ANGLE--> CONFIRMED_ANGLE\n"));
+    }
+}
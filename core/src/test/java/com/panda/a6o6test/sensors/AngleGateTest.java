@@ -0,0 +1,46 @@
+package com.panda.a6o6test.sensors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AngleGateTest {
+
+    private static final long FRAME_NANOS = 16_000_000L;
+
+    @Test
+    public void hoveringAroundTolerance_doesNotThrash() {
+        AngleGate gate = new AngleGate(17, 17, 20, 20, 150);
+        long t = 0;
+        assertTrue(gate.update(0, 0, t));
+        // noise around the 20 degree tolerance flips a plain threshold check on every sample
+        for (int i = 0; i < 600; i++) {
+            t += FRAME_NANOS;
+            gate.update(i % 2 == 0 ? 19.5f : 20.5f, 0, t);
+        }
+        assertTrue(gate.getReportedFlips() <= 1);
+        assertTrue(gate.getSuppressedByHysteresis() + gate.getSuppressedByDwell() > 500);
+    }
+
+    @Test
+    public void needsToEnterDeeperThanToleranceToBecomeGood() {
+        AngleGate gate = new AngleGate(17, 17, 20, 20, 0);
+        assertFalse(gate.update(25, 0, 0));
+        assertFalse(gate.update(19, 0, FRAME_NANOS));
+        assertTrue(gate.update(16, 0, 2 * FRAME_NANOS));
+        assertTrue(gate.update(19, 0, 3 * FRAME_NANOS));
+        assertFalse(gate.update(20, 0, 4 * FRAME_NANOS));
+        assertEquals(2, gate.getReportedFlips());
+    }
+
+    @Test
+    public void changeIsReportedOnlyAfterDwellTime() {
+        AngleGate gate = new AngleGate(17, 17, 20, 20, 150);
+        assertFalse(gate.update(30, 0, 0));
+        assertFalse(gate.update(0, 0, FRAME_NANOS));
+        assertFalse(gate.update(0, 0, 100_000_000L));
+        assertTrue(gate.update(0, 0, FRAME_NANOS + 150_000_000L));
+    }
+}
@@ -0,0 +1,105 @@
+package com.panda.a6o6test.sensors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class GravityFilterTest {
+
+    private static final float G = 9.80665f;
+    private static final long STEP_NANOS = 5_000_000L;
+
+    // up vector of a device rotated about its X axis by the given angle, 90 degrees being upright portrait
+    private static float[] upAboutX(double degrees) {
+        double half = Math.toRadians(degrees) / 2;
+        float x = (float) Math.sin(half);
+        float w = (float) Math.cos(half);
+        // third row of the rotation matrix, as in OrientationMath
+        return new float[]{0, 2 * x * w, 1 - 2 * x * x};
+    }
+
+    private static float[] pitchRoll(GravityFilter filter) {
+        float[] out = new float[2];
+        OrientationMath.pitchRollFromUpVector(filter.getUpX(), filter.getUpY(), filter.getUpZ(), out);
+        return out;
+    }
+
+    @Test
+    public void accelerometerAloneConvergesToGravity() {
+        GravityFilter filter = new GravityFilter(0.5f, 0.15f);
+        assertFalse(filter.hasEstimate());
+        filter.onAccelerometer(0, 0, G, 0);
+        float[] up = upAboutX(90);
+        for (int i = 1; i <= 1000; i++) {
+            filter.onAccelerometer(up[0] * G, up[1] * G, up[2] * G, i * STEP_NANOS);
+        }
+        assertTrue(filter.hasEstimate());
+        assertFalse(filter.isGyroActive());
+        float[] out = pitchRoll(filter);
+        assertEquals(0, out[OrientationMath.PITCH], 0.1f);
+        assertEquals(0, out[OrientationMath.ROLL], 0.1f);
+    }
+
+    @Test
+    public void gyroscopeTracksFastRotationLikeTheRotationVector() {
+        // accelerometer corrections are effectively off, so only the integration is tested
+        GravityFilter filter = new GravityFilter(1000f, 0.15f);
+        float[] up = upAboutX(90);
+        filter.onAccelerometer(up[0] * G, up[1] * G, up[2] * G, 0);
+        double degreesPerSecond = 60;
+        float omega = (float) Math.toRadians(degreesPerSecond);
+        float[] expected = new float[2];
+        for (int i = 0; i <= 100; i++) {
+            long t = i * STEP_NANOS;
+            filter.onGyroscope(omega, 0, 0, t);
+            double angle = 90 + degreesPerSecond * t / 1e9;
+            double half = Math.toRadians(angle) / 2;
+            OrientationMath.pitchRollFromRotationVector(new float[]{(float) Math.sin(half), 0, 0, (float) Math.cos(half)}, expected);
+        }
+        assertTrue(filter.isGyroActive());
+        assertEquals(30, expected[OrientationMath.PITCH], 0.01f);
+        assertEquals(expected[OrientationMath.PITCH], pitchRoll(filter)[OrientationMath.PITCH], 0.5f);
+    }
+
+    @Test
+    public void accelerometerCancelsGyroDrift() {
+        GravityFilter filter = new GravityFilter(0.5f, 0.15f);
+        float[] up = upAboutX(90);
+        filter.onAccelerometer(up[0] * G, up[1] * G, up[2] * G, 0);
+        // a biased gyro on a device lying still
+        for (int i = 1; i <= 2000; i++) {
+            long t = i * STEP_NANOS;
+            filter.onGyroscope(0.02f, 0, 0, t);
+            filter.onAccelerometer(up[0] * G, up[1] * G, up[2] * G, t);
+        }
+        assertEquals(0, pitchRoll(filter)[OrientationMath.PITCH], 1f);
+    }
+
+    @Test
+    public void linearAccelerationIsNotTrusted() {
+        GravityFilter filter = new GravityFilter(0.05f, 0.15f);
+        float[] up = upAboutX(90);
+        filter.onAccelerometer(up[0] * G, up[1] * G, up[2] * G, 0);
+        for (int i = 1; i <= 200; i++) {
+            long t = i * STEP_NANOS;
+            filter.onGyroscope(0, 0, 0, t);
+            // shaken sideways at 2 g
+            filter.onAccelerometer(2 * G, up[1] * G, up[2] * G, t);
+        }
+        assertEquals(0, pitchRoll(filter)[OrientationMath.ROLL], 0.1f);
+    }
+
+    @Test
+    public void resetStartsOverFromNextAccelerometerSample() {
+        GravityFilter filter = new GravityFilter(0.5f, 0.15f);
+        filter.onAccelerometer(0, G, 0, 0);
+        filter.onGyroscope(0, 0, 0, 1);
+        filter.reset();
+        assertFalse(filter.hasEstimate());
+        assertFalse(filter.isGyroActive());
+        filter.onAccelerometer(0, 0, G, 2);
+        assertEquals(1, filter.getUpZ(), 1e-6f);
+    }
+}
@@ -0,0 +1,91 @@
+package com.panda.a6o6test.sensors;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Compares the closed-form pitch/roll against the matrix chain previously used in OrientationManager.
+ */
+public class OrientationMathTest {
+
+    @Test
+    public void matchesMatrixChain_forRandomQuaternions() {
+        Random random = new Random(42);
+        float[] out = new float[2];
+        float[] expected = new float[2];
+        int checked = 0;
+        while (checked < 10_000) {
+            float[] q = randomUnitQuaternion(random);
+            referencePitchRoll(q, expected);
+            if (Math.abs(expected[OrientationMath.PITCH]) > 85) {
+                continue; // roll is undefined close to the poles
+            }
+            OrientationMath.pitchRollFromRotationVector(q, out);
+            assertEquals(expected[OrientationMath.PITCH], out[OrientationMath.PITCH], OrientationMath.TOLERANCE_DEG);
+            assertEquals(expected[OrientationMath.ROLL], out[OrientationMath.ROLL], OrientationMath.TOLERANCE_DEG);
+            checked++;
+        }
+    }
+
+    @Test
+    public void derivesScalarPart_whenOnlyThreeComponentsReported() {
+        Random random = new Random(7);
+        float[] out = new float[2];
+        float[] expected = new float[2];
+        for (int i = 0; i < 1000; i++) {
+            float[] q = randomUnitQuaternion(random);
+            if (q[3] < 0) {
+                for (int j = 0; j < 4; j++) {
+                    q[j] = -q[j];
+                }
+            }
+            referencePitchRoll(q, expected);
+            if (Math.abs(expected[OrientationMath.PITCH]) > 85) {
+                continue;
+            }
+            OrientationMath.pitchRollFromRotationVector(new float[]{q[0], q[1], q[2]}, out);
+            assertEquals(expected[OrientationMath.PITCH], out[OrientationMath.PITCH], 0.05f);
+            assertEquals(expected[OrientationMath.ROLL], out[OrientationMath.ROLL], 0.05f);
+        }
+    }
+
+    @Test
+    public void uprightPortrait_isZero() {
+        // rotation of 90 degrees around the X axis: phone standing upright, screen facing the user
+        float s = (float) Math.sin(Math.PI / 4);
+        float[] out = new float[2];
+        OrientationMath.pitchRollFromRotationVector(new float[]{s, 0, 0, s}, out);
+        assertEquals(0, out[OrientationMath.PITCH], OrientationMath.TOLERANCE_DEG);
+        assertEquals(0, out[OrientationMath.ROLL], OrientationMath.TOLERANCE_DEG);
+    }
+
+    private static float[] randomUnitQuaternion(Random random) {
+        double x = random.nextGaussian(), y = random.nextGaussian(), z = random.nextGaussian(), w = random.nextGaussian();
+        double n = Math.sqrt(x * x + y * y + z * z + w * w);
+        return new float[]{(float) (x / n), (float) (y / n), (float) (z / n), (float) (w / n)};
+    }
+
+    // getRotationMatrixFromVector + remapCoordinateSystem(AXIS_X, AXIS_Z) + getOrientation, as in SensorManager
+    private static void referencePitchRoll(float[] q, float[] out) {
+        float q1 = q[0], q2 = q[1], q3 = q[2], q0 = q[3];
+        float sq_q1 = 2 * q1 * q1, sq_q2 = 2 * q2 * q2, sq_q3 = 2 * q3 * q3;
+        float q1_q2 = 2 * q1 * q2, q3_q0 = 2 * q3 * q0, q1_q3 = 2 * q1 * q3;
+        float q2_q0 = 2 * q2 * q0, q2_q3 = 2 * q2 * q3, q1_q0 = 2 * q1 * q0;
+        float[] r = {
+                1 - sq_q2 - sq_q3, q1_q2 - q3_q0, q1_q3 + q2_q0,
+                q1_q2 + q3_q0, 1 - sq_q1 - sq_q3, q2_q3 - q1_q0,
+                q1_q3 - q2_q0, q2_q3 + q1_q0, 1 - sq_q1 - sq_q2
+        };
+        float[] remapped = new float[9];
+        for (int row = 0; row < 3; row++) {
+            remapped[row * 3] = r[row * 3];
+            remapped[row * 3 + 1] = -r[row * 3 + 2];
+            remapped[row * 3 + 2] = r[row * 3 + 1];
+        }
+        out[OrientationMath.PITCH] = (float) Math.toDegrees(Math.asin(-remapped[7])) * -1;
+        out[OrientationMath.ROLL] = (float) Math.toDegrees(Math.atan2(-remapped[6], remapped[8])) * -1;
+    }
+}
@@ -0,0 +1,42 @@
+package com.panda.a6o6test.sensors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class OrientationProcessorTest {
+
+    // rotation about X by the given angle, 90 degrees being upright portrait
+    private static float[] aboutX(double degrees) {
+        double half = Math.toRadians(degrees) / 2;
+        return new float[]{(float) Math.sin(half), 0, 0, (float) Math.cos(half)};
+    }
+
+    @Test
+    public void uprightIsGood() {
+        OrientationProcessor processor = new OrientationProcessor(new AngleGate(5, 5, 10, 10, 0));
+        assertTrue(processor.process(aboutX(90), 0));
+        assertEquals(0, processor.getPitch(), 0.01f);
+        assertEquals(0, processor.getRoll(), 0.01f);
+    }
+
+    @Test
+    public void tiltedIsBadAfterDwell() {
+        OrientationProcessor processor = new OrientationProcessor(new AngleGate(5, 5, 10, 10, 100));
+        assertTrue(processor.process(aboutX(90), 0));
+        assertTrue(processor.process(aboutX(120), 50_000_000L));
+        assertEquals(30, Math.abs(processor.getPitch()), 0.01f);
+        assertFalse(processor.process(aboutX(120), 150_000_000L));
+        assertEquals(1, processor.getAngleGate().getReportedFlips());
+    }
+
+    @Test
+    public void resetForgetsDecision() {
+        OrientationProcessor processor = new OrientationProcessor(new AngleGate(5, 5, 10, 10, 1000));
+        assertFalse(processor.process(aboutX(120), 0));
+        processor.reset();
+        assertTrue(processor.process(aboutX(90), 1));
+    }
+}
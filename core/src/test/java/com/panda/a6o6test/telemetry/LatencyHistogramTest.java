@@ -0,0 +1,61 @@
+package com.panda.a6o6test.telemetry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverValuesContiguously() {
+        int previous = -1;
+        for (long micros = 0; micros < 1 << 20; micros++) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            assertTrue(bucket == previous || bucket == previous + 1);
+            assertTrue(micros <= LatencyHistogram.upperBoundOf(bucket));
+            if(bucket > 0){
+                assertTrue(micros > LatencyHistogram.upperBoundOf(bucket - 1));
+            }
+            previous = bucket;
+        }
+    }
+
+    @Test
+    public void hugeValuesLandInLastBucket() {
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(1L << 27));
+    }
+
+    @Test
+    public void percentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordMicros(i * 10);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(10_000, histogram.getMaxMicros());
+        long p50 = histogram.percentileMicros(0.5);
+        assertTrue(p50 >= 5000 && p50 <= 5000 * 1.25);
+        long p99 = histogram.percentileMicros(0.99);
+        assertTrue(p99 >= 9900 && p99 <= 10_000);
+    }
+
+    @Test
+    public void negativeLatencyCountsAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(-5000);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.percentileMicros(1));
+    }
+
+    @Test
+    public void emptyAndReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentileMicros(0.5));
+        histogram.recordMicros(123);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.percentileMicros(0.99));
+    }
+}
@@ -0,0 +1,68 @@
+package com.panda.a6o6test.telemetry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void counterIsSharedByName() throws InterruptedException {
+        MetricsRegistry registry = new MetricsRegistry(0);
+        MetricsRegistry.Counter counter = registry.counter("events");
+        assertSame(counter, registry.counter("events"));
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    counter.increment();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40_000, counter.get());
+    }
+
+    @Test
+    public void histogramBucketsByExclusiveUpperBound() {
+        MetricsRegistry registry = new MetricsRegistry(0);
+        MetricsRegistry.Histogram histogram = registry.histogram("interval", 10, 20);
+        histogram.record(0);
+        histogram.record(9);
+        histogram.record(10);
+        histogram.record(25);
+        histogram.record(1000);
+        assertEquals(2, histogram.getCount(0));
+        assertEquals(1, histogram.getCount(1));
+        assertEquals(2, histogram.getCount(2));
+        assertEquals(5, histogram.getTotalCount());
+        assertEquals(1044, histogram.getSum());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnsortedBounds() {
+        new MetricsRegistry(0).histogram("bad", 20, 10);
+    }
+
+    @Test
+    public void dumpListsEveryMetricWithRates() {
+        MetricsRegistry registry = new MetricsRegistry(0);
+        registry.counter("b.events").add(20);
+        registry.gauge("a.dropped", () -> 7);
+        registry.histogram("c.interval", 10).record(3);
+        StringWriter out = new StringWriter();
+        registry.dump(new PrintWriter(out), "", 10_000_000_000L);
+        String text = out.toString();
+        assertTrue(text, text.contains("b.events=20 (2.00/s)"));
+        assertTrue(text, text.contains("a.dropped=7"));
+        assertTrue(text, text.contains("c.interval count=1 mean=3.0 <10:1 >=10:0"));
+    }
+}
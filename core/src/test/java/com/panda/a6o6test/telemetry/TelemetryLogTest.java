@@ -0,0 +1,137 @@
+package com.panda.a6o6test.telemetry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class TelemetryLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordsRoundTrip() throws IOException {
+        File file = folder.newFile();
+        try (TelemetryLog log = TelemetryLog.create(file, 16)) {
+            log.appendOrientation(100, 1.5f, -2.25f, true);
+            log.appendFace(200, 10, 20, 30, 40);
+            log.appendNoFace(300);
+            log.appendState(400, 2, 3, 5);
+        }
+        List<TelemetryReader.Record> records = TelemetryReader.read(file);
+        assertEquals(4, records.size());
+
+        TelemetryReader.Record orientation = records.get(0);
+        assertEquals(TelemetryLog.TYPE_ORIENTATION, orientation.type);
+        assertEquals(100, orientation.timestampNanos);
+        assertEquals(1.5f, orientation.getFloat(0), 0);
+        assertEquals(-2.25f, orientation.getFloat(1), 0);
+        assertEquals(1, orientation.getInt(2));
+
+        TelemetryReader.Record face = records.get(1);
+        assertEquals(TelemetryLog.TYPE_FACE, face.type);
+        assertEquals(40, face.getInt(3));
+        assertEquals(TelemetryLog.TYPE_NO_FACE, records.get(2).type);
+
+        TelemetryReader.Record state = records.get(3);
+        assertEquals(TelemetryLog.TYPE_STATE, state.type);
+        assertEquals(2, state.getInt(0));
+        assertEquals(3, state.getInt(1));
+        assertEquals(5, state.getInt(2));
+    }
+
+    @Test
+    public void rotationVectorWithoutScalarPart() throws IOException {
+        File file = folder.newFile();
+        try (TelemetryLog log = TelemetryLog.create(file, 4)) {
+            log.appendRotationVector(1, new float[]{0.5f, 0.25f, -0.125f});
+            log.appendRotationVector(2, new float[]{0.5f, 0.25f, -0.125f, 0.8f, 0});
+        }
+        List<TelemetryReader.Record> records = TelemetryReader.read(file);
+        assertEquals(TelemetryLog.TYPE_ROTATION_VECTOR, records.get(0).type);
+        assertEquals(-0.125f, records.get(0).getFloat(2), 0);
+        assertTrue(Float.isNaN(records.get(0).getFloat(3)));
+        assertEquals(0.8f, records.get(1).getFloat(3), 0);
+    }
+
+    @Test
+    public void ringKeepsNewestRecordsInOrder() throws IOException {
+        File file = folder.newFile();
+        try (TelemetryLog log = TelemetryLog.create(file, 4)) {
+            for (int i = 0; i < 10; i++) {
+                log.append(7, i, i, 0, 0, 0);
+            }
+            assertEquals(10, log.getAppended());
+        }
+        List<TelemetryReader.Record> records = TelemetryReader.read(file);
+        assertEquals(4, records.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(6 + i, records.get(i).sequence);
+            assertEquals(6 + i, records.get(i).getInt(0));
+        }
+    }
+
+    @Test
+    public void uncommittedSlotIsSkipped() throws IOException {
+        File file = folder.newFile();
+        try (TelemetryLog log = TelemetryLog.create(file, 4)) {
+            log.append(1, 1, 0, 0, 0, 0);
+            log.append(1, 2, 0, 0, 0, 0);
+        }
+        // simulate a crash between claiming the second slot and committing it
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(TelemetryLog.HEADER_SIZE + TelemetryLog.RECORD_SIZE);
+            raw.writeInt(0);
+        }
+        List<TelemetryReader.Record> records = TelemetryReader.read(file);
+        assertEquals(1, records.size());
+        assertEquals(1, records.get(0).timestampNanos);
+    }
+
+    @Test
+    public void concurrentProducersNeverShareASlot() throws Exception {
+        File file = folder.newFile();
+        int threads = 4;
+        int perThread = 1000;
+        try (TelemetryLog log = TelemetryLog.create(file, threads * perThread)) {
+            Thread[] producers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int producer = t;
+                producers[t] = new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        log.append(1, i, producer, i, 0, 0);
+                    }
+                });
+                producers[t].start();
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+        }
+        List<TelemetryReader.Record> records = TelemetryReader.read(file);
+        assertEquals(threads * perThread, records.size());
+        Set<Long> seen = new HashSet<>();
+        for (TelemetryReader.Record record : records) {
+            assertTrue(seen.add(record.getInt(0) * 1_000_000L + record.getInt(1)));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsForeignFile() throws IOException {
+        File file = folder.newFile();
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.setLength(TelemetryLog.HEADER_SIZE + TelemetryLog.RECORD_SIZE);
+        }
+        TelemetryReader.read(file);
+    }
+}
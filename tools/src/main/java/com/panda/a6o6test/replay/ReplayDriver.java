@@ -0,0 +1,195 @@
+package com.panda.a6o6test.replay;
+
+import com.panda.a6o6test.camera.FacePresenceTracker;
+import com.panda.a6o6test.logic.MainLogicState;
+import com.panda.a6o6test.logic.StateEvent;
+import com.panda.a6o6test.logic.StateMachineCore;
+import com.panda.a6o6test.logic.TransitionTable;
+import com.panda.a6o6test.sensors.OrientationProcessor;
+import com.panda.a6o6test.telemetry.TelemetryLog;
+import com.panda.a6o6test.telemetry.TelemetryReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a telemetry recording through the app's orientation, face presence and state logic on the JVM.
+ * Rotation vectors go through {@link OrientationProcessor} and face results through {@link FacePresenceTracker},
+ * raising the same events as OrientationManager and CameraLogic. Recordings without rotation vectors, e.g. from
+ * the accelerometer and gyroscope fusion, take the recorded angle decisions of their orientation records instead.
+ * Frame quality verdicts are replayed as recorded, since the frames themselves are not in the recording.
+ * Inputs that do not come from those streams, like button presses, are taken from the recorded transitions they caused.
+ * Time is virtual: timers fire as soon as replayed time passes them, and pacing is optional.
+ * Uses java.lang.management, so it lives in the JVM-only tools module and never ships in the app.
+ */
+public final class ReplayDriver {
+
+    /**
+     * Replays without any pacing
+     */
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    // recorded events that are inputs to the state machine rather than results of the replayed streams
+    private static final Set<StateEvent> INPUTS = EnumSet.of(StateEvent.IDLE, StateEvent.NO_FACE_FROM_BUTTON,
+            StateEvent.TEST, StateEvent.ERROR, StateEvent.NO_PERMISSION);
+    private static final StateEvent[] EVENTS = StateEvent.values();
+    private static final MainLogicState[] STATES = MainLogicState.values();
+
+    private final double speed;
+
+    /**
+     * @param speed how many times faster than real time to replay, e.g. 1000,
+     *              or {@link #AS_FAST_AS_POSSIBLE}
+     */
+    public ReplayDriver(double speed) {
+        if(!(speed > 0)){
+            throw new IllegalArgumentException("speed must be positive");
+        }
+        this.speed = speed;
+    }
+
+    public ReplayReport replay(File recording) throws IOException {
+        return replay(TelemetryReader.read(recording));
+    }
+
+    /**
+     * Replays records in timestamp order on the calling thread. The state machine starts resumed, in the state
+     * the first recorded transition left, which is NO_PERMISSION unless the ring wrapped and lost the beginning.
+     */
+    public ReplayReport replay(List<TelemetryReader.Record> records) {
+        List<TelemetryReader.Record> ordered = new ArrayList<>(records);
+        // stable, so records of equal timestamps keep their append order
+        Collections.sort(ordered, (first, second) -> Long.compare(first.timestampNanos, second.timestampNanos));
+
+        ReplayReport report = new ReplayReport();
+        long startNanos = ordered.isEmpty() ? 0 : ordered.get(0).timestampNanos;
+        VirtualClock clock = new VirtualClock(startNanos);
+        StateMachineCore core = new StateMachineCore(TransitionTable.getDefault(), clock,
+                (from, to, event) -> report.addTransition(clock.nowNanos() - startNanos, from, to, event),
+                initialState(ordered));
+        Runnable confirmAngle = () -> core.apply(StateEvent.CONFIRM_ANGLE);
+        OrientationProcessor orientation = new OrientationProcessor();
+        FacePresenceTracker faces = new FacePresenceTracker();
+        float[] rotationVector = new float[4];
+        float[] rotationVectorNoW = new float[3];
+        boolean hasRotationVectors = false;
+        for (TelemetryReader.Record record : ordered) {
+            if(record.type == TelemetryLog.TYPE_ROTATION_VECTOR){
+                hasRotationVectors = true;
+                break;
+            }
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean measureCpu = threads.isCurrentThreadCpuTimeSupported();
+        long cpuStart = measureCpu ? threads.getCurrentThreadCpuTime() : 0;
+        long wallStart = System.nanoTime();
+
+        core.apply(StateEvent.RESUME);
+        for (TelemetryReader.Record record : ordered) {
+            pace(wallStart, record.timestampNanos - startNanos);
+            clock.advanceTo(record.timestampNanos, confirmAngle);
+            switch (record.type){
+                case TelemetryLog.TYPE_ROTATION_VECTOR:
+                    report.countRotationSample();
+                    float[] values = rotationVector;
+                    if(Float.isNaN(record.getFloat(3))){
+                        values = rotationVectorNoW;
+                    }
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = record.getFloat(i);
+                    }
+                    core.apply(orientation.process(values, record.timestampNanos) ? StateEvent.GOOD_ANGLE : StateEvent.BAD_ANGLE);
+                    break;
+                case TelemetryLog.TYPE_ORIENTATION:
+                    // the same decision as recomputing it, only without replaying changes to the orientation logic
+                    if(!hasRotationVectors){
+                        report.countAngleDecision();
+                        core.apply(record.getInt(2) != 0 ? StateEvent.GOOD_ANGLE : StateEvent.BAD_ANGLE);
+                    }
+                    break;
+                case TelemetryLog.TYPE_FACE:
+                case TelemetryLog.TYPE_NO_FACE:
+                    report.countFaceResult();
+                    onFace(core, faces, record);
+                    break;
+                case TelemetryLog.TYPE_QUALITY:
+                    report.countQualityVerdict();
+                    core.apply(record.getInt(0) != 0 ? StateEvent.QUALITY_OK : StateEvent.QUALITY_BAD);
+                    break;
+                case TelemetryLog.TYPE_STATE:
+                    int event = record.getInt(2);
+                    if(event >= 0 && event < EVENTS.length && INPUTS.contains(EVENTS[event])){
+                        report.countInputEvent();
+                        core.apply(EVENTS[event]);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        long recordedNanos = ordered.isEmpty() ? 0 : ordered.get(ordered.size() - 1).timestampNanos - startNanos;
+        report.finish(recordedNanos, measureCpu ? threads.getCurrentThreadCpuTime() - cpuStart : -1,
+                System.nanoTime() - wallStart);
+        return report;
+    }
+
+    // nothing changed the state before its first recorded transition
+    private static MainLogicState initialState(List<TelemetryReader.Record> ordered) {
+        for (TelemetryReader.Record record : ordered) {
+            if(record.type == TelemetryLog.TYPE_STATE){
+                int from = record.getInt(0);
+                return from >= 0 && from < STATES.length ? STATES[from] : MainLogicState.NO_PERMISSION;
+            }
+        }
+        return MainLogicState.NO_PERMISSION;
+    }
+
+    // same edges as CameraLogic.onFaceResult
+    private static void onFace(StateMachineCore core, FacePresenceTracker faces, TelemetryReader.Record record) {
+        boolean detected = record.type == TelemetryLog.TYPE_FACE;
+        int edge = faces.update(detected, record.getInt(0), record.getInt(1), record.getInt(2), record.getInt(3));
+        if(edge == FacePresenceTracker.EDGE_APPEARED){
+            core.apply(StateEvent.ALL_GO);
+        }else if(edge == FacePresenceTracker.EDGE_DISAPPEARED){
+            core.apply(StateEvent.NO_FACE_FROM_DETECTION);
+        }
+    }
+
+    // waits until the wall clock catches up with the replayed time divided by the speed
+    private void pace(long wallStartNanos, long offsetNanos) {
+        if(Double.isInfinite(speed)){
+            return;
+        }
+        long dueNanos = wallStartNanos + (long) (offsetNanos / speed);
+        long waitNanos;
+        while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(waitNanos);
+        }
+    }
+
+    /**
+     * Replays recordings and prints their reports: {@code ReplayDriver [--speed N] file...}, as fast as possible by default
+     */
+    public static void main(String[] args) throws IOException {
+        double speed = AS_FAST_AS_POSSIBLE;
+        int first = 0;
+        if(args.length >= 2 && args[0].equals("--speed")){
+            speed = Double.parseDouble(args[1]);
+            first = 2;
+        }
+        ReplayDriver driver = new ReplayDriver(speed);
+        for (int i = first; i < args.length; i++) {
+            System.out.println(args[i]);
+            System.out.println(driver.replay(new File(args[i])));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.panda.a6o6test.replay;
+
+import com.panda.a6o6test.logic.MainLogicState;
+import com.panda.a6o6test.logic.StateEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Outcome of a replay: the transitions it produced and what it cost
+ */
+public final class ReplayReport {
+
+    /**
+     * A transition at a point of the recording
+     */
+    public static final class Transition {
+        public final long offsetMillis;
+        public final MainLogicState from;
+        public final MainLogicState to;
+        public final StateEvent event;
+
+        Transition(long offsetMillis, MainLogicState from, MainLogicState to, StateEvent event) {
+            this.offsetMillis = offsetMillis;
+            this.from = from;
+            this.to = to;
+            this.event = event;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%8d ms %s -> %s on %s", offsetMillis, from, to, event);
+        }
+    }
+
+    private final List<Transition> transitions = new ArrayList<>();
+    private long recordedNanos;
+    private long cpuNanos = -1;
+    private long wallNanos;
+    private int rotationSamples;
+    private int angleDecisions;
+    private int faceResults;
+    private int qualityVerdicts;
+    private int inputEvents;
+
+    void addTransition(long offsetNanos, MainLogicState from, MainLogicState to, StateEvent event) {
+        transitions.add(new Transition(offsetNanos / 1_000_000, from, to, event));
+    }
+
+    void countRotationSample() {
+        rotationSamples++;
+    }
+
+    void countAngleDecision() {
+        angleDecisions++;
+    }
+
+    void countFaceResult() {
+        faceResults++;
+    }
+
+    void countQualityVerdict() {
+        qualityVerdicts++;
+    }
+
+    void countInputEvent() {
+        inputEvents++;
+    }
+
+    void finish(long recordedNanos, long cpuNanos, long wallNanos) {
+        this.recordedNanos = recordedNanos;
+        this.cpuNanos = cpuNanos;
+        this.wallNanos = wallNanos;
+    }
+
+    public List<Transition> getTransitions() {
+        return Collections.unmodifiableList(transitions);
+    }
+
+    /**
+     * @return states entered, in order, e.g. to compare two versions of the logic
+     */
+    public List<MainLogicState> getStateSequence() {
+        List<MainLogicState> states = new ArrayList<>(transitions.size());
+        for (Transition transition : transitions) {
+            states.add(transition.to);
+        }
+        return states;
+    }
+
+    public long getRecordedNanos() {
+        return recordedNanos;
+    }
+
+    /**
+     * @return CPU time of the replaying thread, -1 if the JVM cannot measure it
+     */
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    /**
+     * @return CPU time spent per minute of recording, -1 if unknown
+     */
+    public double getCpuMillisPerRecordedMinute() {
+        if(cpuNanos < 0 || recordedNanos <= 0){
+            return -1;
+        }
+        return cpuNanos / 1e6 / (recordedNanos / 60e9);
+    }
+
+    public int getRotationSamples() {
+        return rotationSamples;
+    }
+
+    /**
+     * @return recorded angle decisions applied as they are, for recordings without rotation vectors
+     */
+    public int getAngleDecisions() {
+        return angleDecisions;
+    }
+
+    public int getFaceResults() {
+        return faceResults;
+    }
+
+    /**
+     * @return recorded frame quality verdicts
+     */
+    public int getQualityVerdicts() {
+        return qualityVerdicts;
+    }
+
+    public int getInputEvents() {
+        return inputEvents;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Transition transition : transitions) {
+            builder.append(transition).append('\n');
+        }
+        builder.append(String.format(Locale.US,
+                "%d transitions from %d rotation samples, %d angle decisions, %d face results, %d quality verdicts, "
+                        + "%d inputs over %.1f s recorded%n"
+                        + "replayed in %.1f ms wall, %.2f ms CPU per recorded minute",
+                transitions.size(), rotationSamples, angleDecisions, faceResults, qualityVerdicts, inputEvents,
+                recordedNanos / 1e9,
+                wallNanos / 1e6, getCpuMillisPerRecordedMinute()));
+        return builder.toString();
+    }
+}
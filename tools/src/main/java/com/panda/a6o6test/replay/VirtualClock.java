@@ -0,0 +1,46 @@
+package com.panda.a6o6test.replay;
+
+import com.panda.a6o6test.logic.StateMachineCore;
+
+/**
+ * Time of a replay, moved forward by recorded timestamps instead of waiting.
+ * Holds the single timer of {@link StateMachineCore}, which fires as soon as replayed time passes its deadline.
+ */
+public final class VirtualClock implements StateMachineCore.Timer {
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private long nowNanos;
+    private long deadlineNanos = NONE;
+
+    public VirtualClock(long startNanos) {
+        this.nowNanos = startNanos;
+    }
+
+    public long nowNanos() {
+        return nowNanos;
+    }
+
+    @Override
+    public void schedule(long delayMillis) {
+        deadlineNanos = nowNanos + delayMillis * 1_000_000L;
+    }
+
+    @Override
+    public void cancel() {
+        deadlineNanos = NONE;
+    }
+
+    /**
+     * Moves time forward, firing a due timer at its own deadline first
+     * @param onTimer run with the clock set to the deadline, may schedule again
+     */
+    public void advanceTo(long timestampNanos, Runnable onTimer) {
+        while (deadlineNanos != NONE && deadlineNanos <= timestampNanos) {
+            nowNanos = Math.max(nowNanos, deadlineNanos);
+            deadlineNanos = NONE;
+            onTimer.run();
+        }
+        nowNanos = Math.max(nowNanos, timestampNanos);
+    }
+}
@@ -0,0 +1,22 @@
+package com.panda.a6o6test.telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Prints every record of the given {@link TelemetryLog} files as text: {@code TelemetryDump file...}
+ */
+public final class TelemetryDump {
+
+    private TelemetryDump(){}
+
+    public static void main(String[] args) throws IOException {
+        PrintStream out = System.out;
+        for (String arg : args) {
+            for (TelemetryReader.Record record : TelemetryReader.read(new File(arg))) {
+                out.println(record);
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.panda.a6o6test.replay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.panda.a6o6test.logic.MainLogicState;
+import com.panda.a6o6test.logic.StateEvent;
+import com.panda.a6o6test.sensors.SensorConstants;
+import com.panda.a6o6test.telemetry.TelemetryLog;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+public class ReplayDriverTest {
+
+    private static final long MS = 1_000_000L;
+    private static final long START = 1_000_000 * MS;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // rotation about X, 90 degrees being upright portrait
+    private static float[] aboutX(double degrees) {
+        double half = Math.toRadians(degrees) / 2;
+        return new float[]{(float) Math.sin(half), 0, 0, (float) Math.cos(half)};
+    }
+
+    // tilted for a second, then upright; the button is pressed at 5 s and a face shows up at 5.5 s
+    private File recordSession() throws IOException {
+        File file = folder.newFile();
+        try (TelemetryLog log = TelemetryLog.create(file, 1024)) {
+            log.appendState(START, MainLogicState.NO_PERMISSION.ordinal(), MainLogicState.IDLE.ordinal(), StateEvent.IDLE.ordinal());
+            for (long t = 0; t < 6000; t += 20) {
+                log.appendRotationVector(START + t * MS, aboutX(t < 1000 ? 140 : 90));
+            }
+            log.appendState(START + 5000 * MS, MainLogicState.CONFIRMED_ANGLE.ordinal(), MainLogicState.NO_FACE.ordinal(),
+                    StateEvent.NO_FACE_FROM_BUTTON.ordinal());
+            for (long t = 5500; t < 6000; t += 100) {
+                log.appendFace(START + t * MS, 100, 100, 300, 300);
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void replaysSessionWithVirtualTimer() throws IOException {
+        ReplayReport report = new ReplayDriver(ReplayDriver.AS_FAST_AS_POSSIBLE).replay(recordSession());
+
+        assertEquals(Arrays.asList(MainLogicState.IDLE, MainLogicState.BAD_ANGLE, MainLogicState.WAITING_ANGLE,
+                MainLogicState.CONFIRMED_ANGLE, MainLogicState.NO_FACE, MainLogicState.ALL_GO), report.getStateSequence());
+        List<ReplayReport.Transition> transitions = report.getTransitions();
+        long waiting = transitions.get(2).offsetMillis;
+        assertTrue(waiting >= 1000 && waiting < 1300);
+        assertEquals(waiting + SensorConstants.UPRIGHT_STABLE_TIME_MILLIS, transitions.get(3).offsetMillis);
+        assertEquals(StateEvent.ALL_GO, transitions.get(5).event);
+        assertEquals(300, report.getRotationSamples());
+        assertEquals(5, report.getFaceResults());
+        assertEquals(2, report.getInputEvents());
+        assertEquals(5980 * MS, report.getRecordedNanos());
+    }
+
+    @Test
+    public void faceInFrameBeforeButtonGoesAllGoOnPress() throws IOException {
+        File file = folder.newFile();
+        try (TelemetryLog log = TelemetryLog.create(file, 1024)) {
+            log.appendState(START, MainLogicState.NO_PERMISSION.ordinal(), MainLogicState.IDLE.ordinal(), StateEvent.IDLE.ordinal());
+            for (long t = 0; t < 6000; t += 20) {
+                log.appendRotationVector(START + t * MS, aboutX(t < 1000 ? 140 : 90));
+            }
+            for (long t = 2000; t < 6000; t += 100) {
+                log.appendFace(START + t * MS, 100, 100, 300, 300);
+            }
+            log.appendState(START + 5000 * MS, MainLogicState.CONFIRMED_ANGLE.ordinal(), MainLogicState.NO_FACE.ordinal(),
+                    StateEvent.NO_FACE_FROM_BUTTON.ordinal());
+        }
+
+        ReplayReport report = new ReplayDriver(ReplayDriver.AS_FAST_AS_POSSIBLE).replay(file);
+
+        assertEquals(Arrays.asList(MainLogicState.IDLE, MainLogicState.BAD_ANGLE, MainLogicState.WAITING_ANGLE,
+                MainLogicState.CONFIRMED_ANGLE, MainLogicState.NO_FACE, MainLogicState.ALL_GO), report.getStateSequence());
+        assertEquals(5000, report.getTransitions().get(5).offsetMillis);
+    }
+
+    @Test
+    public void recordedBadQualityHoldsAllGoBack() throws IOException {
+        File file = folder.newFile();
+        try (TelemetryLog log = TelemetryLog.create(file, 1024)) {
+            log.appendState(START, MainLogicState.NO_PERMISSION.ordinal(), MainLogicState.IDLE.ordinal(), StateEvent.IDLE.ordinal());
+            for (long t = 0; t < 8000; t += 20) {
+                log.appendRotationVector(START + t * MS, aboutX(t < 1000 ? 140 : 90));
+            }
+            log.appendQuality(START + 1500 * MS, false);
+            log.appendState(START + 5000 * MS, MainLogicState.CONFIRMED_ANGLE.ordinal(), MainLogicState.NO_FACE.ordinal(),
+                    StateEvent.NO_FACE_FROM_BUTTON.ordinal());
+            for (long t = 5500; t < 8000; t += 100) {
+                log.appendFace(START + t * MS, 100, 100, 300, 300);
+            }
+            log.appendQuality(START + 7000 * MS, true);
+        }
+
+        ReplayReport report = new ReplayDriver(ReplayDriver.AS_FAST_AS_POSSIBLE).replay(file);
+
+        assertEquals(Arrays.asList(MainLogicState.IDLE, MainLogicState.BAD_ANGLE, MainLogicState.WAITING_ANGLE,
+                MainLogicState.CONFIRMED_ANGLE, MainLogicState.NO_FACE, MainLogicState.ALL_GO), report.getStateSequence());
+        assertEquals(7000, report.getTransitions().get(5).offsetMillis);
+        assertEquals(2, report.getQualityVerdicts());
+    }
+
+    @Test
+    public void fusedSessionReplaysRecordedAngleDecisions() throws IOException {
+        File file = folder.newFile();
+        try (TelemetryLog log = TelemetryLog.create(file, 1024)) {
+            log.appendState(START, MainLogicState.NO_PERMISSION.ordinal(), MainLogicState.IDLE.ordinal(), StateEvent.IDLE.ordinal());
+            for (long t = 0; t < 5000; t += 20) {
+                boolean good = t >= 1000;
+                log.appendOrientation(START + t * MS, good ? 0 : 50, 0, good);
+            }
+        }
+
+        ReplayReport report = new ReplayDriver(ReplayDriver.AS_FAST_AS_POSSIBLE).replay(file);
+
+        assertEquals(Arrays.asList(MainLogicState.IDLE, MainLogicState.BAD_ANGLE, MainLogicState.WAITING_ANGLE,
+                MainLogicState.CONFIRMED_ANGLE), report.getStateSequence());
+        assertEquals(1000, report.getTransitions().get(2).offsetMillis);
+        assertEquals(250, report.getAngleDecisions());
+        assertEquals(0, report.getRotationSamples());
+    }
+
+    @Test
+    public void wrappedRecordingStartsFromFirstRecordedState() throws IOException {
+        File file = folder.newFile();
+        try (TelemetryLog log = TelemetryLog.create(file, 256)) {
+            log.appendState(START, MainLogicState.NO_PERMISSION.ordinal(), MainLogicState.IDLE.ordinal(), StateEvent.IDLE.ordinal());
+            log.appendState(START, MainLogicState.IDLE.ordinal(), MainLogicState.BAD_ANGLE.ordinal(), StateEvent.BAD_ANGLE.ordinal());
+            for (long t = 0; t < 2000; t += 20) {
+                log.appendRotationVector(START + t * MS, aboutX(140));
+            }
+            log.appendState(START + 2150 * MS, MainLogicState.BAD_ANGLE.ordinal(), MainLogicState.WAITING_ANGLE.ordinal(),
+                    StateEvent.GOOD_ANGLE.ordinal());
+            for (long t = 2000; t < 6000; t += 20) {
+                log.appendRotationVector(START + t * MS, aboutX(90));
+            }
+        }
+
+        ReplayReport report = new ReplayDriver(ReplayDriver.AS_FAST_AS_POSSIBLE).replay(file);
+
+        assertTrue(report.getRotationSamples() < 300);
+        assertEquals(Arrays.asList(MainLogicState.WAITING_ANGLE, MainLogicState.CONFIRMED_ANGLE), report.getStateSequence());
+        assertEquals(MainLogicState.BAD_ANGLE, report.getTransitions().get(0).from);
+    }
+
+    @Test
+    public void replayIsDeterministic() throws IOException {
+        File recording = recordSession();
+        ReplayDriver driver = new ReplayDriver(ReplayDriver.AS_FAST_AS_POSSIBLE);
+        assertEquals(driver.replay(recording).getTransitions().toString(), driver.replay(recording).getTransitions().toString());
+    }
+
+    @Test
+    public void pacedReplayTakesRecordedTimeOverSpeed() throws IOException {
+        ReplayReport report = new ReplayDriver(1000).replay(recordSession());
+        assertTrue(report.getWallNanos() >= report.getRecordedNanos() / 1000);
+    }
+
+    @Test
+    public void virtualClockFiresAtDeadline() {
+        VirtualClock clock = new VirtualClock(0);
+        long[] firedAt = {-1};
+        clock.schedule(3000);
+        clock.advanceTo(2999 * MS, () -> firedAt[0] = clock.nowNanos());
+        assertEquals(-1, firedAt[0]);
+        clock.advanceTo(10_000 * MS, () -> firedAt[0] = clock.nowNanos());
+        assertEquals(3000 * MS, firedAt[0]);
+        assertEquals(10_000 * MS, clock.nowNanos());
+    }
+}